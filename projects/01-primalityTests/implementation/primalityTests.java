@@ -1,4 +1,10 @@
+import java.math.BigInteger;
 import java.util.Random;
+import java.util.function.LongPredicate;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 
 public class PrimeChecker {
     private static final long RNG_SEED = 12345L;
@@ -34,14 +40,118 @@ public class PrimeChecker {
     
     // Helper function for fast binary exponentiation
     public static long binaryPower(long base, long exp, long mod) {
+        if (mod == 1) return 0;
+        // Odd moduli (every interesting primality case) go through Montgomery form,
+        // which keeps every intermediate product in 128 bits and never overflows
+        if ((mod & 1) == 1) {
+            long nInv = montInverse(mod);
+            long one = montOne(mod);
+            long r2 = montRSquared(mod, one);
+            long x = montPower(montMultiply(base % mod, r2, mod, nInv), exp, mod, nInv, one);
+            return montMultiply(x, 1, mod, nInv);    // Convert back out of Montgomery form
+        }
         long result = 1;
         base = base % mod;
         while (exp > 0) {
             if ((exp & 1) == 1) {    // If exp is odd
-                result = (result * base) % mod;
+                result = mulMod(result, base, mod);
             }
-            exp = exp >> 1;                // Divide exp by 2
-            base = (base * base) % mod;    // Square the base
+            exp = exp >> 1;                    // Divide exp by 2
+            base = mulMod(base, base, mod);    // Square the base
+        }
+        return result;
+    }
+
+    // Computes (a * b) % mod without overflowing, used only for even moduli
+    private static long mulMod(long a, long b, long mod) {
+        // Products of two values below sqrt(Long.MAX_VALUE) still fit in a long
+        if (mod <= 3037000499L) return (a * b) % mod;
+        // Otherwise fall back to double-and-add so no partial sum exceeds 2 * mod
+        long result = 0;
+        while (b > 0) {
+            if ((b & 1) == 1) {
+                result = addMod(result, a, mod);
+            }
+            a = addMod(a, a, mod);
+            b = b >> 1;
+        }
+        return result;
+    }
+
+    // Computes (a + b) % mod for a, b already reduced, without overflowing
+    private static long addMod(long a, long b, long mod) {
+        // a + b may pass 2^63, so compare against the gap to mod instead of summing first
+        return a >= mod - b ? a - (mod - b) : a + b;
+    }
+
+    /*
+     * Montgomery arithmetic with R = 2^64.
+     *
+     * A residue x mod n is stored as x * R mod n. In that form a product only needs one
+     * 128-bit multiply and one "reduction" that divides by R, which is just taking the high
+     * word, so the hot loop of Miller-Rabin contains no division at all. All helpers take
+     * the modulus n (odd, positive) and nInv = n^-1 mod 2^64 as plain longs so nothing is
+     * allocated per call.
+     */
+
+    // High 64 bits of the unsigned 128-bit product a * b
+    // (Math.unsignedMultiplyHigh only exists from Java 18, so correct the signed version)
+    static long unsignedMultiplyHigh(long a, long b) {
+        return Math.multiplyHigh(a, b) + ((a >> 63) & b) + ((b >> 63) & a);
+    }
+
+    // n^-1 mod 2^64 for odd n using Newton's iteration
+    static long montInverse(long n) {
+        // n * n == 1 mod 8, so n is already its own inverse to 3 bits
+        long inv = n;
+        // Each step doubles the number of correct bits: 3 -> 6 -> 12 -> 24 -> 48 -> 96
+        for (int i = 0; i < 5; ++i) {
+            inv *= 2 - n * inv;
+        }
+        return inv;
+    }
+
+    // R mod n, which is the Montgomery form of 1
+    static long montOne(long n) {
+        // 2^64 - 1 as an unsigned value, plus one more, reduced mod n
+        long r = Long.remainderUnsigned(-1L, n) + 1;
+        return r == n ? 0 : r;
+    }
+
+    // R^2 mod n, used to move ordinary residues into Montgomery form
+    static long montRSquared(long n, long one) {
+        // Start from R mod n and double it 64 more times: R * 2^64 = R^2
+        long r = one;
+        for (int i = 0; i < 64; ++i) {
+            r = addMod(r, r, n);
+        }
+        return r;
+    }
+
+    // Divides the 128-bit value (hi, lo) by R mod n, assuming hi < n
+    static long montReduce(long hi, long lo, long n, long nInv) {
+        // m is chosen so that lo - m * n clears the low word exactly
+        long m = lo * nInv;
+        // What is left is the high word difference, which lies in (-n, n)
+        long t = hi - unsignedMultiplyHigh(m, n);
+        return t < 0 ? t + n : t;
+    }
+
+    // Montgomery product a * b / R mod n for a, b in [0, n)
+    static long montMultiply(long a, long b, long n, long nInv) {
+        // Both operands are below n < 2^63, so the signed high word is the unsigned one
+        return montReduce(Math.multiplyHigh(a, b), a * b, n, nInv);
+    }
+
+    // Binary exponentiation entirely inside Montgomery form, base already converted
+    static long montPower(long base, long exp, long n, long nInv, long one) {
+        long result = one;
+        while (exp > 0) {
+            if ((exp & 1) == 1) {    // If exp is odd
+                result = montMultiply(result, base, n, nInv);
+            }
+            exp = exp >> 1;                            // Divide exp by 2
+            base = montMultiply(base, base, n, nInv);  // Square the base
         }
         return result;
     }
@@ -64,15 +174,18 @@ public class PrimeChecker {
     }
     
     // Check if n is composite using Miller-Rabin criteria
-    private static boolean checkComposite(long n, long a, long d, int s) {
-        long x = binaryPower(a, d, n);
-        if (x == 1 || x == n - 1) return false;
+    // n must be odd; nInv, one and r2 are its Montgomery constants, so the loop below never divides
+    private static boolean checkComposite(long n, long a, long d, int s, long nInv, long one, long r2) {
+        // n - 1 in Montgomery form is just n minus the form of 1
+        long minusOne = n - one;
+        long x = montPower(montMultiply(a, r2, n, nInv), d, n, nInv, one);
+        if (x == one || x == minusOne) return false;
         
         // Check the other cases for r
         for (int j = 1; j < s; ++j) {
-            x = binaryPower(x, 2, n);
+            x = montMultiply(x, x, n, nInv);
             // Checking a^(2^r * d), accumulate x
-            if (x == n - 1) return false;
+            if (x == minusOne) return false;
         }
         return true;
     }
@@ -80,6 +193,8 @@ public class PrimeChecker {
     // Miller-Rabin primality test
     public static boolean millerRabin(long n, int iters) {
         if (n < 4) return n == 2 || n == 3;
+        // Montgomery form needs an odd modulus, and even numbers are composite anyway
+        if ((n & 1) == 0) return false;
         // Want to write n-1 as d*2^s, find suitable d and s
         int s = 0;
         long d = n - 1;
@@ -87,13 +202,17 @@ public class PrimeChecker {
             d = d >> 1;    // Divide d by 2
             s++;           // Increment s
         }
+        // Montgomery constants for n are shared by every witness
+        long nInv = montInverse(n);
+        long one = montOne(n);
+        long r2 = montRSquared(n, one);
         
         // Using Random with a seed for reproducibility
         Random random = new Random(RNG_SEED);
         for (int i = 0; i < iters; ++i) {
             // Generate a random number in the range [2, n-2]
             long a = 2 + (long)(random.nextDouble() * (n - 3));
-            if (checkComposite(n, a, d, s)) {
+            if (checkComposite(n, a, d, s, nInv, one, r2)) {
                 return false;
             }
         }
@@ -103,6 +222,7 @@ public class PrimeChecker {
     // Deterministic Miller-Rabin primality test for 64-bit integers
     public static boolean millerRabinDeterministic(long n, int iters) {
         if (n < 4) return n == 2 || n == 3;
+        if ((n & 1) == 0) return false;
         // Want to write n-1 as d*2^s, find suitable d and s
         int s = 0;
         long d = n - 1;
@@ -110,20 +230,907 @@ public class PrimeChecker {
             d = d >> 1;    // Divide d by 2
             s++;           // Increment s
         }
+        long nInv = montInverse(n);
+        long one = montOne(n);
+        long r2 = montRSquared(n, one);
         
         // Only need to check first 12 primes for 64-bit ints
         long[] primes = {2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37};
         for (int i = 0; i < Math.min(iters, primes.length); ++i) {
             // Is a prime
             if (primes[i] == n) return true;
-            if (checkComposite(n, primes[i], d, s)) {
+            if (checkComposite(n, primes[i], d, s, nInv, one, r2)) {
                 return false;
             }
         }
         return true;  // n is *probably* prime
     }
+
+    // Witness sets proven to make Miller-Rabin exact below the given bound
+    // (Jaeschke for 32-bit sizes, Sinclair's seven bases for everything below 2^64)
+    private static final long[] BASES_32 = {2, 7, 61};
+    private static final long[] BASES_64 = {2, 325, 9375, 28178, 450775, 9780504, 1795265022};
+
+    // Exact Miller-Rabin for every positive long, picking the smallest proven base set
+    public static boolean millerRabinDeterministic(long n) {
+        if (n < 4) return n == 2 || n == 3;
+        if ((n & 1) == 0) return false;
+        // Want to write n-1 as d*2^s; the trailing zero count gives s directly
+        int s = Long.numberOfTrailingZeros(n - 1);
+        long d = (n - 1) >> s;
+        long nInv = montInverse(n);
+        long one = montOne(n);
+        long r2 = montRSquared(n, one);
+
+        // Three bases suffice below 4,759,123,141, seven cover the whole 64-bit range
+        long[] bases = n < 4759123141L ? BASES_32 : BASES_64;
+        for (long base : bases) {
+            // A base that is a multiple of n says nothing about n, so skip it
+            long a = base % n;
+            if (a == 0) continue;
+            if (checkComposite(n, a, d, s, nInv, one, r2)) {
+                return false;
+            }
+        }
+        return true;  // n is prime, no probability involved
+    }
     
+    // Odd numbers covered by one sieve segment: 2^18 bits is 32 KiB of words, which fits in L1/L2
+    private static final int SEGMENT_BITS = 1 << 18;
+
+    // All primes <= limit (limit < 2^31) with a plain odd-only bit-packed sieve
+    static int[] smallPrimes(int limit) {
+        if (limit < 2) return new int[0];
+        // Bit i stands for the odd number 2i + 1; a set bit marks a composite
+        int bits = (limit - 1) / 2 + 1;
+        long[] composite = new long[(bits + 63) >>> 6];
+        composite[0] |= 1L;    // 1 is not prime
+        for (long p = 3; p * p <= limit; p += 2) {
+            if ((composite[(int) (p >>> 7)] & (1L << (p >>> 1))) != 0) continue;
+            // Cross off odd multiples starting at p^2, stepping 2p keeps them odd
+            for (long m = p * p; m <= limit; m += 2 * p) {
+                composite[(int) (m >>> 7)] |= 1L << (m >>> 1);
+            }
+        }
+        // Count the unmarked odd numbers first so the result is allocated exactly once
+        if ((bits & 63) != 0) composite[composite.length - 1] |= -1L << bits;
+        int count = 1;
+        for (long word : composite) count += Long.bitCount(~word);
+        // Collect 2 followed by every unmarked odd number
+        int[] primes = new int[count];
+        primes[0] = 2;
+        int k = 1;
+        for (int w = 0; w < composite.length; ++w) {
+            long free = ~composite[w];
+            while (free != 0) {
+                primes[k++] = 2 * ((w << 6) + Long.numberOfTrailingZeros(free)) + 1;
+                free &= free - 1;
+            }
+        }
+        return primes;
+    }
+
+    // Sieves the odd numbers first, first + 2, ... up to hi (at most SEGMENT_BITS of them)
+    // and returns the composite bitmap; bits past the end of the range are already set
+    private static long[] sieveSegment(long first, long hi, int[] basePrimes) {
+        int len = (int) Math.min(SEGMENT_BITS, (hi - first) / 2 + 1);
+        long[] composite = new long[(len + 63) >>> 6];
+        long last = first + 2L * (len - 1);
+        // Skip 2: the segment holds odd numbers only
+        for (int k = 1; k < basePrimes.length; ++k) {
+            long p = basePrimes[k];
+            if (p * p > last) break;
+            // First odd multiple of p inside the segment, never below p^2 so p itself survives
+            long start = Math.max(p * p, (first + p - 1) / p * p);
+            if ((start & 1) == 0) start += p;
+            // Consecutive odd multiples are 2p apart, i.e. p bits apart
+            for (long j = (start - first) >>> 1; j < len; j += p) {
+                composite[(int) (j >>> 6)] |= 1L << j;
+            }
+        }
+        // Mark the unused tail of the last word so callers can count whole words
+        if ((len & 63) != 0) composite[composite.length - 1] |= -1L << len;
+        return composite;
+    }
+
+    // Splits [lo, hi] into odd-only segments and returns the first odd number of each one's base
+    private static long firstOdd(long lo) {
+        // 1 is neither prime nor composite, and 2 is handled by the callers
+        long first = Math.max(lo, 3);
+        return (first & 1) == 0 ? first + 1 : first;
+    }
+
+    // Base primes needed to sieve up to hi
+    private static int[] basePrimesFor(long hi) {
+        // The base primes must fit in an int, which caps hi at 2^62 (isqrt(2^62 - 1) = 2^31 - 1)
+        if (hi >= 1L << 62) throw new IllegalArgumentException("hi must be below 2^62");
+        return smallPrimes((int) isqrt(hi));
+    }
+
+    // Exact floor(sqrt(n)) for n >= 0; the double estimate can be off by one either way near 2^62
+    static long isqrt(long n) {
+        long r = (long) Math.sqrt((double) n);
+        while (r * r > n) r--;
+        while ((r + 1) * (r + 1) <= n) r++;
+        return r;
+    }
+
+    // All primes in [lo, hi], sieved segment by segment in parallel on the common ForkJoinPool
+    public static long[] primesInRange(long lo, long hi) {
+        if (hi < 2 || hi < lo) return new long[0];
+        int[] basePrimes = basePrimesFor(hi);
+        long first = firstOdd(lo);
+        long[] two = lo <= 2 ? new long[]{2} : new long[0];
+        if (first > hi) return two;
+        // A long: ranges wider than about 2^50 have more than 2^31 segments
+        long segments = (hi - first) / (2L * SEGMENT_BITS) + 1;
+
+        // Each segment is sieved independently; the ordered stream keeps primes ascending
+        long[] odd = LongStream.range(0, segments).parallel()
+                .mapToObj(k -> {
+                    long segFirst = first + 2L * SEGMENT_BITS * k;
+                    long[] composite = sieveSegment(segFirst, hi, basePrimes);
+                    // Walk the clear bits only, one word at a time
+                    LongStream.Builder out = LongStream.builder();
+                    for (int w = 0; w < composite.length; ++w) {
+                        long free = ~composite[w];
+                        while (free != 0) {
+                            out.add(segFirst + 2L * ((w << 6) + Long.numberOfTrailingZeros(free)));
+                            free &= free - 1;
+                        }
+                    }
+                    return out.build();
+                })
+                .flatMapToLong(x -> x)
+                .toArray();
+        return LongStream.concat(LongStream.of(two), LongStream.of(odd)).toArray();
+    }
+
+    // Number of primes in [lo, hi] without ever materializing them
+    public static long countPrimes(long lo, long hi) {
+        if (hi < 2 || hi < lo) return 0;
+        int[] basePrimes = basePrimesFor(hi);
+        long first = firstOdd(lo);
+        long two = lo <= 2 ? 1 : 0;
+        if (first > hi) return two;
+        long segments = (hi - first) / (2L * SEGMENT_BITS) + 1;
+
+        // Every clear bit in a segment is a prime, so popcounts add up to the answer
+        return two + LongStream.range(0, segments).parallel()
+                .map(k -> {
+                    long[] composite = sieveSegment(first + 2L * SEGMENT_BITS * k, hi, basePrimes);
+                    long count = 0;
+                    for (long word : composite) count += Long.bitCount(~word);
+                    return count;
+                })
+                .sum();
+    }
+    
+    // Products of the primes up to 47 and of the primes 53..97; both still fit in a long,
+    // so one gcd against each checks 25 small prime factors at once
+    private static final long PRIMORIAL_47 = 614889782588491410L;
+    private static final long PRIMORIAL_53_97 = 53L * 59 * 61 * 67 * 71 * 73 * 79 * 83 * 89 * 97;
+    // Anything below 101^2 that has no prime factor up to 97 must be prime itself
+    private static final long PREFILTER_LIMIT = 101L * 101;
+    // How many values one parallel task classifies before handing back to the pool
+    private static final int BATCH_CHUNK = 1 << 12;
+
+    // Binary gcd for non-negative values, avoiding division entirely
+    static long gcd(long a, long b) {
+        if (a == 0) return b;
+        if (b == 0) return a;
+        // Pull out the shared power of two once, then keep both numbers odd
+        int shift = Long.numberOfTrailingZeros(a | b);
+        a >>>= Long.numberOfTrailingZeros(a);
+        while (b != 0) {
+            b >>>= Long.numberOfTrailingZeros(b);
+            // Subtract the smaller odd number from the larger; the difference is even
+            if (a > b) {
+                long t = a;
+                a = b;
+                b = t;
+            }
+            b -= a;
+        }
+        return a << shift;
+    }
+
+    // Counters filled in by the batch test so callers can see where the time went
+    public static final class BatchStats {
+        final LongAdder values = new LongAdder();
+        final LongAdder rejectedByPrefilter = new LongAdder();
+        final LongAdder millerRabinCalls = new LongAdder();
+        final LongAdder primes = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+
+        public long values() { return values.sum(); }
+        public long rejectedByPrefilter() { return rejectedByPrefilter.sum(); }
+        public long millerRabinCalls() { return millerRabinCalls.sum(); }
+        public long primes() { return primes.sum(); }
+        public long nanos() { return nanos.sum(); }
+
+        // Values classified per second of wall-clock time
+        public double throughput() {
+            long ns = nanos();
+            return ns == 0 ? 0 : values() * 1e9 / ns;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("values=%d prefiltered=%d millerRabin=%d primes=%d time=%.3fms (%.0f values/s)",
+                    values(), rejectedByPrefilter(), millerRabinCalls(), primes(), nanos() / 1e6, throughput());
+        }
+    }
+
+    // Classifies one value; only survivors of the small-prime filter pay for Miller-Rabin
+    private static boolean isPrimeFiltered(long n, BatchStats stats) {
+        if (n < 2) {
+            stats.rejectedByPrefilter.increment();
+            return false;
+        }
+        // Tiny values are settled by the sieve table directly
+        if (n < 100) return smallPrimeBelow100(n);
+        // A common factor with either primorial means a prime factor below 100
+        if ((n & 1) == 0 || gcd(PRIMORIAL_47, n) != 1 || gcd(PRIMORIAL_53_97, n) != 1) {
+            stats.rejectedByPrefilter.increment();
+            return false;
+        }
+        if (n < PREFILTER_LIMIT) return true;
+        stats.millerRabinCalls.increment();
+        return millerRabinDeterministic(n);
+    }
+
+    // Primes below 100 as a bit mask, so the smallest inputs never reach a gcd
+    private static final long[] PRIMES_BELOW_100 = {0x28208a20a08a28acL, 0x0000000202088288L};
+
+    private static boolean smallPrimeBelow100(long n) {
+        return (PRIMES_BELOW_100[(int) (n >>> 6)] & (1L << n)) != 0;
+    }
+
+    // Batch primality test: out[i] is set to whether values[i] is prime
+    public static void isPrime(long[] values, boolean[] out, BatchStats stats) {
+        if (out.length < values.length) throw new IllegalArgumentException("out is shorter than values");
+        long start = System.nanoTime();
+        int chunks = (values.length + BATCH_CHUNK - 1) / BATCH_CHUNK;
+        // Chunks write disjoint slices of out, so they can run on any core without locking
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            int from = c * BATCH_CHUNK;
+            int to = Math.min(values.length, from + BATCH_CHUNK);
+            int found = 0;
+            for (int i = from; i < to; ++i) {
+                out[i] = isPrimeFiltered(values[i], stats);
+                if (out[i]) found++;
+            }
+            stats.primes.add(found);
+        });
+        stats.values.add(values.length);
+        stats.nanos.add(System.nanoTime() - start);
+    }
+
+    // Convenience overload that allocates the verdicts and discards the counters
+    public static boolean[] isPrime(long[] values) {
+        boolean[] out = new boolean[values.length];
+        isPrime(values, out, new BatchStats());
+        return out;
+    }
+    
+    // Primes below 2^12, cached once for trial division before Pollard-Brent takes over
+    private static final int[] TRIAL_PRIMES = smallPrimes(1 << 12);
+    // Pollard-Brent multiplies this many differences together before paying for one gcd
+    private static final int RHO_BATCH = 128;
+
+    // Per-stage timings for factorization, shared safely between threads
+    public static final class FactorStats {
+        final LongAdder values = new LongAdder();
+        final LongAdder trialDivisionNanos = new LongAdder();
+        final LongAdder primalityNanos = new LongAdder();
+        final LongAdder rhoNanos = new LongAdder();
+        final LongAdder rhoSplits = new LongAdder();
+
+        public long values() { return values.sum(); }
+        public long trialDivisionNanos() { return trialDivisionNanos.sum(); }
+        public long primalityNanos() { return primalityNanos.sum(); }
+        public long rhoNanos() { return rhoNanos.sum(); }
+        public long rhoSplits() { return rhoSplits.sum(); }
+
+        @Override
+        public String toString() {
+            return String.format("values=%d trialDivision=%.3fms primality=%.3fms rho=%.3fms (%d splits)",
+                    values(), trialDivisionNanos() / 1e6, primalityNanos() / 1e6, rhoNanos() / 1e6, rhoSplits());
+        }
+    }
+
+    // Prime factorization of n in ascending order, with multiplicity (empty for n < 2)
+    public static long[] factor(long n) {
+        return factor(n, new FactorStats());
+    }
+
+    public static long[] factor(long n, FactorStats stats) {
+        stats.values.increment();
+        if (n < 2) return new long[0];
+        // At most 63 prime factors fit in a positive long
+        long[] factors = new long[63];
+        int count = 0;
+
+        // Powers of two come straight from the trailing zero count
+        long start = System.nanoTime();
+        int twos = Long.numberOfTrailingZeros(n);
+        for (int i = 0; i < twos; ++i) factors[count++] = 2;
+        n >>= twos;
+        // Trial division by the cached odd primes; once p^2 > n whatever is left is prime
+        for (int k = 1; k < TRIAL_PRIMES.length && n > 1; ++k) {
+            long p = TRIAL_PRIMES[k];
+            if (p * p > n) {
+                factors[count++] = n;
+                n = 1;
+                break;
+            }
+            while (n % p == 0) {
+                factors[count++] = p;
+                n /= p;
+            }
+        }
+        stats.trialDivisionNanos.add(System.nanoTime() - start);
+
+        // The rest has only large prime factors: split composites with rho until all are prime
+        if (n > 1) {
+            long[] pending = new long[63];
+            int top = 0;
+            pending[top++] = n;
+            while (top > 0) {
+                long m = pending[--top];
+                start = System.nanoTime();
+                boolean prime = millerRabinDeterministic(m);
+                stats.primalityNanos.add(System.nanoTime() - start);
+                if (prime) {
+                    factors[count++] = m;
+                    continue;
+                }
+                start = System.nanoTime();
+                long d = pollardBrent(m);
+                stats.rhoNanos.add(System.nanoTime() - start);
+                stats.rhoSplits.increment();
+                pending[top++] = d;
+                pending[top++] = m / d;
+            }
+        }
+        long[] result = java.util.Arrays.copyOf(factors, count);
+        java.util.Arrays.sort(result);
+        return result;
+    }
+
+    // Finds a nontrivial divisor of an odd composite n with Brent's variant of Pollard's rho
+    static long pollardBrent(long n) {
+        long nInv = montInverse(n);
+        long one = montOne(n);
+        // Walk x -> x^2 + c; a cycle mod an unknown prime factor shows up as gcd(x - y, n) > 1
+        for (long c = one; ; c = addMod(c, one, n)) {
+            long y = addMod(one, one, n), x = y, ys = y;
+            long q = one, g = 1;
+            for (int r = 1; g == 1; r <<= 1) {
+                // Park x at the start of this power-of-two stretch and advance y r steps
+                x = y;
+                for (int i = 0; i < r; ++i) {
+                    y = addMod(montMultiply(y, y, n, nInv), c, n);
+                }
+                // Multiply the differences together and take one gcd per batch
+                for (int k = 0; k < r && g == 1; k += RHO_BATCH) {
+                    ys = y;
+                    int steps = Math.min(RHO_BATCH, r - k);
+                    for (int i = 0; i < steps; ++i) {
+                        y = addMod(montMultiply(y, y, n, nInv), c, n);
+                        q = montMultiply(q, x > y ? x - y : y - x, n, nInv);
+                    }
+                    // Montgomery form multiplies by R, which is coprime to n, so the gcd is unchanged
+                    g = gcd(q, n);
+                }
+            }
+            // The batch overshot to a multiple of n: replay it one step at a time
+            if (g == n) {
+                do {
+                    ys = addMod(montMultiply(ys, ys, n, nInv), c, n);
+                    g = gcd(x > ys ? x - ys : ys - x, n);
+                } while (g == 1);
+            }
+            // g == n means this c cycled mod n itself, so retry with the next constant
+            if (g != n) return g;
+        }
+    }
+
+    // Factors every value in parallel; result[i] is factor(values[i])
+    public static long[][] factorAll(long[] values, FactorStats stats) {
+        long[][] result = new long[values.length][];
+        IntStream.range(0, values.length).parallel().forEach(i -> result[i] = factor(values[i], stats));
+        return result;
+    }
+    
+    /*
+     * Memoizing front end for millerRabinDeterministic with a fixed memory budget.
+     *
+     * Each slot holds a long key plus 2 bits of state (empty, composite, prime) and one clock
+     * reference bit, all in primitive arrays. A key hashes to a stripe and, inside it, to a
+     * bucket of 8 slots; lookups only probe that bucket. When a bucket is full the clock hand
+     * sweeps it, clearing reference bits, and evicts the first slot not used since the last
+     * sweep (or, after two passes, whatever slot is under the hand). Every stripe has its own StampedLock and reads are optimistic, so concurrent
+     * readers never block each other and writers only contend within one stripe.
+     */
+    public static final class VerdictCache {
+        private static final int BUCKET = 8;
+        private static final int EMPTY = 0, COMPOSITE = 1, PRIME = 2;
+
+        private final Stripe[] stripes;
+        private final int stripeShift;
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+
+        private static final class Stripe {
+            final StampedLock lock = new StampedLock();
+            final long[] keys;
+            final long[] states;        // 2 bits per slot
+            final long[] referenced;    // 1 clock bit per slot
+            final int bucketMask;
+            int hand;
+
+            Stripe(int buckets) {
+                keys = new long[buckets * BUCKET];
+                states = new long[(keys.length + 31) >>> 5];
+                referenced = new long[(keys.length + 63) >>> 6];
+                bucketMask = buckets - 1;
+            }
+
+            int state(int slot) {
+                return (int) (states[slot >>> 5] >>> ((slot & 31) << 1)) & 3;
+            }
+
+            void setState(int slot, int state) {
+                int shift = (slot & 31) << 1;
+                states[slot >>> 5] = states[slot >>> 5] & ~(3L << shift) | ((long) state << shift);
+            }
+
+            // Slot holding key in the bucket starting at base, or -1
+            int find(int base, long key) {
+                for (int slot = base; slot < base + BUCKET; ++slot) {
+                    if (keys[slot] == key && state(slot) != EMPTY) return slot;
+                }
+                return -1;
+            }
+        }
+
+        // Room for at least `capacity` verdicts, split over a power-of-two number of stripes
+        public VerdictCache(int capacity, int stripeCount) {
+            int stripesPow2 = ceilPowerOfTwo(stripeCount);
+            int bucketsPerStripe = ceilPowerOfTwo((capacity + stripesPow2 * BUCKET - 1) / (stripesPow2 * BUCKET));
+            stripes = new Stripe[stripesPow2];
+            for (int i = 0; i < stripesPow2; ++i) stripes[i] = new Stripe(bucketsPerStripe);
+            stripeShift = 64 - Integer.numberOfTrailingZeros(stripesPow2);
+        }
+
+        public VerdictCache(int capacity) {
+            this(capacity, 4 * Runtime.getRuntime().availableProcessors());
+        }
+
+        // Smallest power of two >= x, and 1 for x <= 1
+        private static int ceilPowerOfTwo(int x) {
+            return x <= 1 ? 1 : Integer.highestOneBit(x - 1) << 1;
+        }
+
+        // Memoized millerRabinDeterministic(n)
+        public boolean isPrime(long n) {
+            // Spread the key so that nearby numbers land in different stripes and buckets
+            long h = n * 0x9E3779B97F4A7C15L;
+            h ^= h >>> 29;
+            Stripe stripe = stripes[stripeShift == 64 ? 0 : (int) (h >>> stripeShift)];
+            int base = ((int) h & stripe.bucketMask) * BUCKET;
+
+            // Optimistic read: no lock taken unless a writer interferes
+            long stamp = stripe.lock.tryOptimisticRead();
+            int slot = stripe.find(base, n);
+            int state = slot < 0 ? EMPTY : stripe.state(slot);
+            if (!stripe.lock.validate(stamp)) {
+                stamp = stripe.lock.readLock();
+                try {
+                    slot = stripe.find(base, n);
+                    state = slot < 0 ? EMPTY : stripe.state(slot);
+                } finally {
+                    stripe.lock.unlockRead(stamp);
+                }
+            }
+            if (state != EMPTY) {
+                hits.increment();
+                // The reference bit is only a hint for eviction, so it is set without the lock;
+                // a racing update may lose it or undo a sweep's clear, which insert tolerates
+                stripe.referenced[slot >>> 6] |= 1L << slot;
+                return state == PRIME;
+            }
+
+            // Miss: run the real test outside the lock, then publish the verdict
+            misses.increment();
+            boolean prime = millerRabinDeterministic(n);
+            stamp = stripe.lock.writeLock();
+            try {
+                if (stripe.find(base, n) < 0) insert(stripe, base, n, prime ? PRIME : COMPOSITE);
+            } finally {
+                stripe.lock.unlockWrite(stamp);
+            }
+            return prime;
+        }
+
+        // Caller holds the stripe's write lock
+        private void insert(Stripe stripe, int base, long key, int state) {
+            int victim = -1;
+            for (int slot = base; slot < base + BUCKET; ++slot) {
+                if (stripe.state(slot) == EMPTY) {
+                    victim = slot;
+                    break;
+                }
+            }
+            // Bucket full: second-chance sweep. Hits keep setting reference bits without the
+            // lock, so clearing them need not make progress; after two passes the slot under
+            // the hand is evicted regardless, which bounds the time the write lock is held
+            for (int step = 0; victim < 0; ++step) {
+                int slot = base + (stripe.hand++ & (BUCKET - 1));
+                long bit = 1L << slot;
+                if (step < 2 * BUCKET && (stripe.referenced[slot >>> 6] & bit) != 0) {
+                    stripe.referenced[slot >>> 6] &= ~bit;
+                } else {
+                    victim = slot;
+                    evictions.increment();
+                }
+            }
+            stripe.keys[victim] = key;
+            stripe.setState(victim, state);
+            stripe.referenced[victim >>> 6] &= ~(1L << victim);
+        }
+
+        // Number of verdicts the table can hold at once
+        public int capacity() {
+            return stripes.length * stripes[0].keys.length;
+        }
+
+        public long hits() { return hits.sum(); }
+        public long misses() { return misses.sum(); }
+        public long evictions() { return evictions.sum(); }
+
+        @Override
+        public String toString() {
+            return String.format("capacity=%d hits=%d misses=%d evictions=%d", capacity(), hits(), misses(), evictions());
+        }
+    }
+    
+    // Odd candidates examined per nextPrime/prevPrime window (the average prime gap near 2^63 is ~44)
+    private static final int PRIME_WINDOW = 256;
+    // The largest prime that fits in a long
+    private static final long LARGEST_LONG_PRIME = 9223372036854775783L;
+
+    // Marks every odd number first + 2i (i < len) that has a cached small prime factor,
+    // leaving the small primes themselves unmarked
+    private static void markSmallFactors(long first, int len, long[] composite) {
+        java.util.Arrays.fill(composite, 0);
+        long last = first + 2L * (len - 1);
+        for (int k = 1; k < TRIAL_PRIMES.length; ++k) {
+            long p = TRIAL_PRIMES[k];
+            if (p * p > last) break;
+            // Index of the first odd multiple: first + 2j = 0 mod p, found without overflowing
+            long r = first % p;
+            long j = r == 0 ? 0 : ((p - r) % 2 == 0 ? (p - r) / 2 : (2 * p - r) / 2);
+            // Start at p^2 at the earliest so that p itself survives
+            if (first < p * p) j = Math.max(j, (p * p - first) / 2);
+            for (; j < len; j += p) {
+                composite[(int) (j >>> 6)] |= 1L << j;
+            }
+        }
+    }
+
+    // Survivors of the small-prime sieve below (2^12)^2 have no factor left to find
+    private static boolean survivorIsPrime(long candidate) {
+        return candidate < (1L << 24) || millerRabinDeterministic(candidate);
+    }
+
+    // Smallest prime >= n
+    public static long nextPrime(long n) {
+        if (n <= 2) return 2;
+        if (n > LARGEST_LONG_PRIME) throw new IllegalArgumentException("no prime >= " + n + " fits in a long");
+        long[] composite = new long[PRIME_WINDOW / 64];
+        // Only odd numbers can be the answer from here on
+        long first = (n & 1) == 0 ? n + 1 : n;
+        while (true) {
+            // Shrink the last window so it never runs past Long.MAX_VALUE
+            int len = (int) Math.min(PRIME_WINDOW, (Long.MAX_VALUE - first) / 2 + 1);
+            markSmallFactors(first, len, composite);
+            // Only the unmarked candidates pay for a strong test, smallest first
+            for (int i = 0; i < len; ++i) {
+                if ((composite[i >>> 6] & (1L << i)) == 0 && survivorIsPrime(first + 2L * i)) {
+                    return first + 2L * i;
+                }
+            }
+            first += 2L * PRIME_WINDOW;
+        }
+    }
+
+    // Largest prime <= n
+    public static long prevPrime(long n) {
+        if (n < 2) throw new IllegalArgumentException("no prime <= " + n);
+        if (n < 3) return 2;
+        long[] composite = new long[PRIME_WINDOW / 64];
+        long last = (n & 1) == 0 ? n - 1 : n;
+        while (true) {
+            // The window [first, last] ends at 3 at the lowest; 2 is the fallback below that
+            int len = (int) Math.min(PRIME_WINDOW, (last - 3) / 2 + 1);
+            long first = last - 2L * (len - 1);
+            markSmallFactors(first, len, composite);
+            // Walk the window from the top so the first survivor that passes is the answer
+            for (int i = len - 1; i >= 0; --i) {
+                if ((composite[i >>> 6] & (1L << i)) == 0 && survivorIsPrime(first + 2L * i)) {
+                    return first + 2L * i;
+                }
+            }
+            if (first == 3) return 2;
+            last = first - 2;
+        }
+    }
+
+    // Smallest probable prime >= n for values of any size
+    public static BigInteger nextPrime(BigInteger n) {
+        if (n.bitLength() < 63) return BigInteger.valueOf(nextPrime(n.longValue()));
+        long[] composite = new long[PRIME_WINDOW / 64];
+        BigInteger first = n.testBit(0) ? n : n.add(BigInteger.ONE);
+        // first mod p for every cached odd prime; later windows just advance these by 2W
+        int[] residues = new int[TRIAL_PRIMES.length];
+        for (int k = 1; k < TRIAL_PRIMES.length; ++k) {
+            residues[k] = first.mod(BigInteger.valueOf(TRIAL_PRIMES[k])).intValue();
+        }
+        while (true) {
+            java.util.Arrays.fill(composite, 0);
+            for (int k = 1; k < TRIAL_PRIMES.length; ++k) {
+                int p = TRIAL_PRIMES[k];
+                int r = residues[k];
+                // Index of the first odd multiple of p in the window: first + 2j = 0 mod p
+                int j = r == 0 ? 0 : ((p - r) % 2 == 0 ? (p - r) / 2 : (2 * p - r) / 2);
+                for (; j < PRIME_WINDOW; j += p) {
+                    composite[j >>> 6] |= 1L << j;
+                }
+                residues[k] = (r + 2 * PRIME_WINDOW) % p;
+            }
+            for (int i = 0; i < PRIME_WINDOW; ++i) {
+                if ((composite[i >>> 6] & (1L << i)) != 0) continue;
+                BigInteger candidate = first.add(BigInteger.valueOf(2L * i));
+                if (candidate.isProbablePrime(100)) return candidate;
+            }
+            first = first.add(BigInteger.valueOf(2L * PRIME_WINDOW));
+        }
+    }
+    
+    /*
+     * Microbenchmark for every primality strategy, run with `java primalityTests.java bench`.
+     *
+     * This project is a set of single-file programs with no build, so JMH cannot be pulled in.
+     * The harness follows the same protocol by hand: warm-up passes until the JIT settles, then
+     * timed passes over fixed inputs, a result sink so no call can be optimized away, and
+     * allocation measured through the per-thread allocation counters that JMH's GC profiler
+     * reports as gc.alloc.rate and gc.alloc.rate.norm.
+     *
+     * Inputs are bucketed by bit length (16/32/48/62) and by kind: primes, ordinary odd
+     * composites, and Carmichael numbers, which fool the Fermat test for every coprime base.
+     */
+    static final class Benchmark {
+        private static final int[] BITS = {16, 32, 48, 62};
+        private static final String[] KINDS = {"prime", "composite", "carmichael"};
+        private static final int INPUTS = 64;
+        private static final long WARMUP_NANOS = 300_000_000L;
+        private static final long MEASURE_NANOS = 1_000_000_000L;
+        // Keeps every verdict observable so the JIT cannot drop the calls
+        static volatile int sink;
+
+        // One strategy under test and the largest input size it finishes in reasonable time
+        private static final class Strategy {
+            final String name;
+            final int maxBits;
+            final LongPredicate test;
+
+            Strategy(String name, int maxBits, LongPredicate test) {
+                this.name = name;
+                this.maxBits = maxBits;
+                this.test = test;
+            }
+        }
+
+        static void run(String filter) {
+            VerdictCache cache = new VerdictCache(1 << 12);
+            Strategy[] strategies = {
+                new Strategy("naive", 16, PrimeChecker::naive),
+                new Strategy("naiveOptimized", 32, PrimeChecker::naiveOptimized),
+                new Strategy("fermatPrime", 62, n -> fermatPrime(n, 12)),
+                new Strategy("millerRabin", 62, n -> millerRabin(n, 12)),
+                new Strategy("millerRabinDeterministic(12)", 62, n -> millerRabinDeterministic(n, 12)),
+                new Strategy("millerRabinDeterministic", 62, PrimeChecker::millerRabinDeterministic),
+                new Strategy("VerdictCache", 62, cache::isPrime),
+                // The batch API is measured through its own path below
+                new Strategy("isPrime(long[])", 62, null),
+            };
+
+            System.out.printf("%-30s %5s %-11s %14s %12s %12s%n",
+                    "strategy", "bits", "kind", "ns/op", "B/op", "MB/s alloc");
+            Random random = new Random(RNG_SEED);
+            for (int bits : BITS) {
+                for (String kind : KINDS) {
+                    long[] inputs = inputs(bits, kind, random);
+                    for (Strategy strategy : strategies) {
+                        if (filter != null && !strategy.name.startsWith(filter)) continue;
+                        if (bits > strategy.maxBits) {
+                            System.out.printf("%-30s %5d %-11s %14s%n", strategy.name, bits, kind, "skipped");
+                            continue;
+                        }
+                        measure(strategy, bits, kind, inputs);
+                    }
+                }
+            }
+        }
+
+        // Warms up, then times whole passes over the inputs and reports per-call figures
+        private static void measure(Strategy strategy, int bits, String kind, long[] inputs) {
+            boolean[] verdicts = new boolean[inputs.length];
+            BatchStats stats = new BatchStats();
+            long deadline = System.nanoTime() + WARMUP_NANOS;
+            while (System.nanoTime() < deadline) {
+                pass(strategy, inputs, verdicts, stats);
+            }
+
+            long passes = 0;
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            long elapsed;
+            do {
+                pass(strategy, inputs, verdicts, stats);
+                passes++;
+                elapsed = System.nanoTime() - start;
+            } while (elapsed < MEASURE_NANOS);
+            long allocated = allocatedBytes() - allocatedBefore;
+
+            double ops = (double) passes * inputs.length;
+            double nsPerOp = elapsed / ops;
+            double bytesPerOp = allocated / ops;
+            System.out.printf("%-30s %5d %-11s %14.1f %12.1f %12.1f%n", strategy.name, bits, kind,
+                    nsPerOp, bytesPerOp, bytesPerOp / nsPerOp * 1e9 / (1 << 20));
+        }
+
+        private static void pass(Strategy strategy, long[] inputs, boolean[] verdicts, BatchStats stats) {
+            int found = 0;
+            if (strategy.test == null) {
+                isPrime(inputs, verdicts, stats);
+                for (boolean v : verdicts) if (v) found++;
+            } else {
+                for (long n : inputs) if (strategy.test.test(n)) found++;
+            }
+            sink += found;
+        }
+
+        // Bytes allocated so far by every live thread, so work on pool threads is counted too
+        private static long allocatedBytes() {
+            com.sun.management.ThreadMXBean threads =
+                    (com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory.getThreadMXBean();
+            long total = 0;
+            for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+                if (bytes > 0) total += bytes;
+            }
+            return total;
+        }
+
+        // INPUTS values of exactly `bits` bits of the requested kind
+        static long[] inputs(int bits, String kind, Random random) {
+            long[] out = new long[INPUTS];
+            long low = 1L << (bits - 1);
+            int count = 0;
+            if (kind.equals("carmichael")) {
+                long[] found = carmichaelNumbers(bits, random);
+                // Cycle through however many were found to fill the input set
+                for (int i = 0; i < INPUTS; ++i) out[i] = found[i % found.length];
+                return out;
+            }
+            while (count < INPUTS) {
+                long n = (low + (random.nextLong() & (low - 1))) | 1;
+                if (kind.equals("prime")) {
+                    long p = nextPrime(n);
+                    if (64 - Long.numberOfLeadingZeros(p) == bits) out[count++] = p;
+                } else if (!millerRabinDeterministic(n)) {
+                    out[count++] = n;
+                }
+            }
+            return out;
+        }
+
+        // Three-factor Carmichael numbers n = pqr of the given size. Korselt's criterion needs
+        // (r - 1) | (n - 1), and n - 1 = pq - 1 mod (r - 1), so r - 1 must divide pq - 1:
+        // every candidate r comes from a divisor of pq - 1
+        static long[] carmichaelNumbers(int bits, Random random) {
+            java.util.TreeSet<Long> found = new java.util.TreeSet<>();
+            // Chernick's (6k+1)(12k+1)(18k+1) is Carmichael whenever all three factors are prime;
+            // it is plentiful for large sizes, so start k where the product reaches `bits` bits
+            for (long k = Math.max(1, (long) Math.cbrt((double) (1L << (bits - 1)) / 1296)); found.size() < 16; ++k) {
+                long n = (6 * k + 1) * (12 * k + 1) * (18 * k + 1);
+                int length = 64 - Long.numberOfLeadingZeros(n);
+                if (length > bits) break;
+                if (length == bits && millerRabinDeterministic(6 * k + 1)
+                        && millerRabinDeterministic(12 * k + 1) && millerRabinDeterministic(18 * k + 1)) {
+                    found.add(n);
+                }
+            }
+            // Small sizes have few Chernick numbers, so also search from random p and q
+            for (int attempt = 0; attempt < 100_000 && found.size() < 16; ++attempt) {
+                // p below 2^(bits/3) and q below 2^(bits/2) leave room for an r above q
+                long p = nextPrime(3 + (random.nextLong() & ((1L << (bits / 3)) - 1)));
+                long q = nextPrime(p + 2 + (random.nextLong() & ((1L << (bits / 2)) - 1)));
+                long pq = p * q;
+                long[] primes = factor(pq - 1);
+                for (long d : divisors(primes)) {
+                    long r = d + 1;
+                    if (r <= q || r > Long.MAX_VALUE / pq) continue;
+                    long n = pq * r;
+                    if (64 - Long.numberOfLeadingZeros(n) != bits) continue;
+                    if ((n - 1) % (p - 1) == 0 && (n - 1) % (q - 1) == 0 && millerRabinDeterministic(r)) {
+                        found.add(n);
+                    }
+                }
+            }
+            if (found.isEmpty()) throw new IllegalStateException("no " + bits + "-bit Carmichael numbers found");
+            return found.stream().mapToLong(Long::longValue).toArray();
+        }
+
+        // Every divisor of the number whose sorted prime factors are given
+        private static long[] divisors(long[] primes) {
+            long[] divisors = {1};
+            for (int i = 0; i < primes.length; ) {
+                // Group equal primes so each prime power is applied once
+                int j = i;
+                while (j < primes.length && primes[j] == primes[i]) ++j;
+                long[] next = new long[divisors.length * (j - i + 1)];
+                int k = 0;
+                for (long d : divisors) {
+                    long power = d;
+                    for (int e = 0; e <= j - i; ++e) {
+                        next[k++] = power;
+                        power *= primes[i];
+                    }
+                }
+                divisors = next;
+                i = j;
+            }
+            return divisors;
+        }
+    }
+    
+    // The segmented sieve must agree with Miller-Rabin at the very top of its range, where
+    // sqrt(hi) is 2^31 - 1 and the base prime table is as large as it gets
+    static void checkSieveNearTop() {
+        long hi = (1L << 62) - 1;
+        long lo = hi - 1000;
+        long expected = LongStream.rangeClosed(lo, hi).filter(PrimeChecker::millerRabinDeterministic).count();
+        long counted = countPrimes(lo, hi);
+        long[] listed = primesInRange(lo, hi);
+        if (counted != expected || listed.length != expected) {
+            throw new AssertionError("primes in [2^62 - 1001, 2^62 - 1]: expected " + expected
+                    + ", countPrimes " + counted + ", primesInRange " + listed.length);
+        }
+        for (long p : listed) {
+            if (!millerRabinDeterministic(p)) throw new AssertionError(p + " is not prime");
+        }
+        if (isqrt(hi) != Integer.MAX_VALUE || isqrt((long) Integer.MAX_VALUE * Integer.MAX_VALUE) != Integer.MAX_VALUE) {
+            throw new AssertionError("isqrt near 2^62");
+        }
+    }
+
     public static void main(String[] args) {
+        // `bench [strategy prefix]` runs the benchmark instead of the demo
+        if (args.length > 0 && args[0].equals("bench")) {
+            Benchmark.run(args.length > 1 ? args[1] : null);
+            return;
+        }
+        // `check` runs the regression checks below
+        if (args.length > 0 && args[0].equals("check")) {
+            checkSieveNearTop();
+            System.out.println("all checks passed");
+            return;
+        }
         System.out.println("Hello, World!");
         
         // You can add test cases here
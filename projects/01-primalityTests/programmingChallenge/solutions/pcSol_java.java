@@ -1,135 +1,474 @@
 import java.math.BigInteger;
-import java.util.Random;
 import java.util.Scanner;
-import java.security.SecureRandom;
 // see primalityTests.java under implementation for a more detailed explanation
 
 public class pcSol_java {
-    private SecureRandom random = new SecureRandom();
-    
-    // Binary exponentiation: calculates (a^b) % m
-    private BigInteger binpow(BigInteger a, BigInteger b, BigInteger m) {
-        BigInteger r = BigInteger.ONE;
-        a = a.mod(m);
-        while (b.compareTo(BigInteger.ZERO) > 0) {
-            if (b.testBit(0)) { // b & 1 == 1
-                r = r.multiply(a).mod(m);
-            }
-            b = b.shiftRight(1); // b >>= 1
-            a = a.multiply(a).mod(m);
-        }
-        return r;
+    private static final BigInteger TWO = BigInteger.valueOf(2);
+
+    // Odd primes below 1000, grouped so that each group's product still fits in a long;
+    // one BigInteger remainder per group then checks the whole group with long arithmetic
+    private static final long[][] SMALL_PRIME_GROUPS;
+    private static final BigInteger[] SMALL_PRIME_PRODUCTS;
+    static {
+        java.util.List<long[]> groups = new java.util.ArrayList<>();
+        java.util.List<Long> group = new java.util.ArrayList<>();
+        long product = 1;
+        for (long p = 3; p < 1000; p += 2) {
+            boolean prime = true;
+            for (long q = 3; q * q <= p; q += 2) {
+                if (p % q == 0) { prime = false; break; }
+            }
+            if (!prime) continue;
+            // Start a new group once another factor would overflow the product
+            if (product > Long.MAX_VALUE / p) {
+                groups.add(group.stream().mapToLong(Long::longValue).toArray());
+                group.clear();
+                product = 1;
+            }
+            group.add(p);
+            product *= p;
+        }
+        groups.add(group.stream().mapToLong(Long::longValue).toArray());
+        SMALL_PRIME_GROUPS = groups.toArray(new long[0][]);
+        SMALL_PRIME_PRODUCTS = new BigInteger[SMALL_PRIME_GROUPS.length];
+        for (int i = 0; i < SMALL_PRIME_GROUPS.length; i++) {
+            long prod = 1;
+            for (long p : SMALL_PRIME_GROUPS[i]) prod *= p;
+            SMALL_PRIME_PRODUCTS[i] = BigInteger.valueOf(prod);
+        }
     }
     
     // Helper function for Miller-Rabin primality test
+    // modPow already runs Montgomery multiplication with a sliding window for odd moduli
     private boolean checkComposite(BigInteger n, BigInteger a, BigInteger d, int s) {
-        BigInteger r = binpow(a, d, n);
-        if (r.equals(BigInteger.ONE) || r.equals(n.subtract(BigInteger.ONE))) {
+        BigInteger nMinusOne = n.subtract(BigInteger.ONE);
+        BigInteger r = a.modPow(d, n);
+        if (r.equals(BigInteger.ONE) || r.equals(nMinusOne)) {
             return false;
         }
         for (int i = 0; i < s - 1; i++) {
             r = r.multiply(r).mod(n);
-            if (r.equals(n.subtract(BigInteger.ONE))) {
+            if (r.equals(nMinusOne)) {
                 return false;
             }
         }
         return true;
     }
+
+    // Jacobi symbol (a / n) for odd positive n and any int a, using quadratic reciprocity
+    private static int jacobi(long a, BigInteger n) {
+        int result = 1;
+        // (-1 / n) is -1 exactly when n = 3 mod 4
+        if (a < 0) {
+            a = -a;
+            if (n.testBit(1)) result = -result;
+        }
+        // Each factor of 2 flips the sign when n = 3 or 5 mod 8
+        int nMod8 = n.intValue() & 7;
+        while ((a & 1) == 0 && a != 0) {
+            a >>= 1;
+            if (nMod8 == 3 || nMod8 == 5) result = -result;
+        }
+        if (a == 0) return 0;
+        if (a == 1) return result;
+        // Flip (a / n) to (n mod a / a); the sign changes only if both are 3 mod 4
+        if ((a & 3) == 3 && (nMod8 & 3) == 3) result = -result;
+        long m = n.mod(BigInteger.valueOf(a)).longValue();
+        // From here everything fits in a long
+        long b = a;
+        while (m != 0) {
+            while ((m & 1) == 0) {
+                m >>= 1;
+                long bMod8 = b & 7;
+                if (bMod8 == 3 || bMod8 == 5) result = -result;
+            }
+            long t = m; m = b; b = t;
+            if ((m & 3) == 3 && (b & 3) == 3) result = -result;
+            m %= b;
+        }
+        return b == 1 ? result : 0;
+    }
+
+    /*
+     * Montgomery arithmetic on int[] limbs (little-endian, 32 bits each) for one odd modulus.
+     *
+     * A residue x is stored as x * R mod n with R = 2^(32k). A product then needs one
+     * interleaved multiply-and-reduce pass (CIOS) instead of a full BigInteger multiply
+     * followed by a long division, and all buffers are reused across calls.
+     */
+    static final class MontgomeryModulus {
+        private static final long MASK = 0xFFFFFFFFL;
+        final int k;              // Limbs per residue
+        private final int[] n;    // The modulus
+        private final int n0inv;  // -n^-1 mod 2^32
+        private final int[] t;    // Scratch accumulator for products
+        private final BigInteger modulus;
+
+        MontgomeryModulus(BigInteger modulus) {
+            this.modulus = modulus;
+            k = (modulus.bitLength() + 31) >>> 5;
+            n = limbs(modulus);
+            t = new int[k + 2];
+            // Newton's iteration doubles the correct low bits of n^-1: 3 -> 6 -> 12 -> 24 -> 48
+            int inv = n[0];
+            for (int i = 0; i < 4; i++) inv *= 2 - n[0] * inv;
+            n0inv = -inv;
+        }
+
+        // The k low limbs of a non-negative value below 2^(32k)
+        int[] limbs(BigInteger x) {
+            int[] out = new int[k];
+            for (int i = 0; i < k; i++) out[i] = x.shiftRight(32 * i).intValue();
+            return out;
+        }
+
+        // x * R mod n, the Montgomery form of x
+        int[] toMontgomery(BigInteger x) {
+            return limbs(x.shiftLeft(32 * k).mod(modulus));
+        }
+
+        // out = a * b / R mod n; out may alias a or b
+        void multiply(int[] a, int[] b, int[] out) {
+            java.util.Arrays.fill(t, 0);
+            for (int i = 0; i < k; i++) {
+                // t += a[i] * b
+                long ai = a[i] & MASK, carry = 0;
+                for (int j = 0; j < k; j++) {
+                    long v = (t[j] & MASK) + ai * (b[j] & MASK) + carry;
+                    t[j] = (int) v;
+                    carry = v >>> 32;
+                }
+                long v = (t[k] & MASK) + carry;
+                t[k] = (int) v;
+                t[k + 1] = (int) (v >>> 32);
+
+                // Add the multiple of n that clears the low limb, then drop that limb
+                long m = (t[0] * n0inv) & MASK;
+                v = (t[0] & MASK) + m * (n[0] & MASK);
+                carry = v >>> 32;
+                for (int j = 1; j < k; j++) {
+                    v = (t[j] & MASK) + m * (n[j] & MASK) + carry;
+                    t[j - 1] = (int) v;
+                    carry = v >>> 32;
+                }
+                v = (t[k] & MASK) + carry;
+                t[k - 1] = (int) v;
+                t[k] = t[k + 1] + (int) (v >>> 32);
+            }
+            // The result is below 2n, so at most one subtraction brings it into range
+            if (t[k] != 0 || !less(t, n)) {
+                long borrow = 0;
+                for (int j = 0; j < k; j++) {
+                    long v = (t[j] & MASK) - (n[j] & MASK) - borrow;
+                    t[j] = (int) v;
+                    borrow = (v >>> 63);
+                }
+            }
+            System.arraycopy(t, 0, out, 0, k);
+        }
+
+        // out = a - b mod n for a, b in [0, n)
+        void subtract(int[] a, int[] b, int[] out) {
+            long borrow = 0;
+            for (int j = 0; j < k; j++) {
+                long v = (a[j] & MASK) - (b[j] & MASK) - borrow;
+                out[j] = (int) v;
+                borrow = v >>> 63;
+            }
+            // A final borrow means the difference went negative, so wrap around by adding n
+            if (borrow != 0) {
+                long carry = 0;
+                for (int j = 0; j < k; j++) {
+                    long v = (out[j] & MASK) + (n[j] & MASK) + carry;
+                    out[j] = (int) v;
+                    carry = v >>> 32;
+                }
+            }
+        }
+
+        // Unsigned comparison of the k low limbs
+        private boolean less(int[] a, int[] b) {
+            for (int j = k - 1; j >= 0; j--) {
+                if (a[j] != b[j]) return Integer.compareUnsigned(a[j], b[j]) < 0;
+            }
+            return false;
+        }
+
+        static boolean isZero(int[] a) {
+            for (int x : a) if (x != 0) return false;
+            return true;
+        }
+    }
+
+    // Extra strong Lucas probable-prime test with Baillie's parameters (Q = 1, smallest P >= 3
+    // with ((P^2 - 4) / n) = -1). With Q = 1 the V sequence alone carries everything needed,
+    // so each bit of the index costs two Montgomery multiplications
+    private boolean extraStrongLucas(BigInteger n) {
+        // Find the first P whose discriminant D = P^2 - 4 is a non-residue mod n
+        long P = 3;
+        while (true) {
+            long D = P * P - 4;
+            int j = jacobi(D, n);
+            if (j == -1) break;
+            // (D / n) = 0 means D shares a factor with the (much larger) n
+            if (j == 0) return false;
+            // Perfect squares never produce -1, so check for one before searching forever
+            if (P == 10) {
+                BigInteger root = n.sqrt();
+                if (root.multiply(root).equals(n)) return false;
+            }
+            P++;
+        }
+
+        // Write n + 1 = d * 2^s with d odd
+        BigInteger d = n.add(BigInteger.ONE);
+        int s = d.getLowestSetBit();
+        d = d.shiftRight(s);
+
+        // Constants in Montgomery form
+        MontgomeryModulus mont = new MontgomeryModulus(n);
+        int[] p = mont.toMontgomery(BigInteger.valueOf(P));
+        int[] two = mont.toMontgomery(TWO);
+        int[] minusTwo = mont.toMontgomery(n.subtract(TWO));
+
+        // Lucas chain keeping (V_k, V_k+1), starting from V_0 = 2, V_1 = P:
+        // V_2k = V_k^2 - 2 and V_2k+1 = V_k V_k+1 - P
+        int[] V = two.clone(), V1 = p.clone();
+        for (int i = d.bitLength() - 1; i >= 0; i--) {
+            if (d.testBit(i)) {
+                mont.multiply(V, V1, V);
+                mont.subtract(V, p, V);
+                mont.multiply(V1, V1, V1);
+                mont.subtract(V1, two, V1);
+            } else {
+                mont.multiply(V, V1, V1);
+                mont.subtract(V1, p, V1);
+                mont.multiply(V, V, V);
+                mont.subtract(V, two, V);
+            }
+        }
+
+        // U_d = 0 exactly when 2 V_d+1 = P V_d, and then V_d must be +-2
+        if (java.util.Arrays.equals(V, two) || java.util.Arrays.equals(V, minusTwo)) {
+            int[] pv = new int[mont.k];
+            mont.multiply(p, V, pv);
+            // 2 V_d+1 - P V_d computed as V_d+1 - (P V_d - V_d+1)
+            mont.subtract(pv, V1, pv);
+            mont.subtract(V1, pv, pv);
+            if (MontgomeryModulus.isZero(pv)) return true;
+        }
+        // Otherwise some V_d*2^r with 0 <= r < s - 1 has to vanish
+        for (int r = 0; r < s - 1; r++) {
+            if (MontgomeryModulus.isZero(V)) return true;
+            mont.multiply(V, V, V);
+            mont.subtract(V, two, V);
+        }
+        return false;
+    }
     
-    // Miller-Rabin primality test
-    private boolean isPrime(BigInteger n, int k) {
+    // Baillie-PSW primality test: trial division, one strong base-2 test, one extra strong Lucas test
+    // No composite passing both tests is known, and it needs no random witnesses
+    private boolean isPrime(BigInteger n) {
         // Check small cases
         if (n.compareTo(BigInteger.valueOf(4)) < 0) {
-            return n.equals(BigInteger.valueOf(2)) || n.equals(BigInteger.valueOf(3));
+            return n.equals(TWO) || n.equals(BigInteger.valueOf(3));
         }
         
         // Check if even
-        if (n.mod(BigInteger.valueOf(2)).equals(BigInteger.ZERO)) {
+        if (!n.testBit(0)) {
             return false;
         }
+
+        // Trial division by the odd primes below 1000, one group remainder at a time
+        boolean small = n.bitLength() < 11;
+        for (int g = 0; g < SMALL_PRIME_GROUPS.length; g++) {
+            long rem = n.mod(SMALL_PRIME_PRODUCTS[g]).longValue();
+            for (long p : SMALL_PRIME_GROUPS[g]) {
+                if (rem % p == 0) {
+                    // Dividing by p only disqualifies n when n is not p itself
+                    return small && n.longValue() == p;
+                }
+            }
+        }
+        // No factor below 1000 means every n below 1000^2 is prime
+        if (n.bitLength() < 20 && n.longValue() < 1000L * 1000L) {
+            return true;
+        }
         
         // Find s and d such that n-1 = 2^s * d where d is odd
-        int s = 0;
         BigInteger d = n.subtract(BigInteger.ONE);
-        while (d.mod(BigInteger.valueOf(2)).equals(BigInteger.ZERO)) {
-            d = d.shiftRight(1);
-            s++;
-        }
+        int s = d.getLowestSetBit();
+        d = d.shiftRight(s);
         
-        // Witness loop
-        for (int i = 0; i < k; i++) {
-            // Generate random a between 2 and n-2
-            BigInteger a;
-            do {
-                a = new BigInteger(n.bitLength(), random);
-            } while (a.compareTo(BigInteger.valueOf(2)) < 0 || a.compareTo(n.subtract(BigInteger.valueOf(2))) > 0);
-            
-            if (checkComposite(n, a, d, s)) {
-                return false;
-            }
+        // One strong probable-prime test to base 2, then the Lucas test
+        if (checkComposite(n, TWO, d, s)) {
+            return false;
         }
-        return true;
-    }
-    
-    // Overloaded method with default k=15
-    private boolean isPrime(BigInteger n) {
-        return isPrime(n, 15);
+        return extraStrongLucas(n);
     }
     
-    // Custom hash function
-    private BigInteger fartcoinHash(String s) {
-        BigInteger h = BigInteger.ZERO;
-        for (int i = 0; i < s.length(); i++) {
-            h = h.shiftLeft(1);
-            h = h.xor(BigInteger.valueOf(s.charAt(i)));
-        }
-        return h;
+    /*
+     * Custom hash function, kept incrementally.
+     *
+     * fartcoinHash(s) starts at 0 and, for every character, shifts left by one bit and xors the
+     * character in. Appending a nonce of m characters therefore only shifts the old hash left by
+     * m bits and xors the nonce's own characters into the low m + 16 bits, so the chain never has
+     * to be rehashed from its first character.
+     *
+     * Hashes are kept as little-endian 32-bit limbs. Candidates are built in a scratch array
+     * owned by the testing thread, so rejected nonces allocate no limbs at all; extending the
+     * chain writes into a spare array and swaps it with the chain's instead of copying.
+     */
+    static final class FartcoinHashState {
+        private int[] committed = new int[4];
+        private int committedLength = 0;    // Limbs in use, highest one nonzero
+        private int[] spare = new int[4];
+        private final ThreadLocal<int[]> scratch = ThreadLocal.withInitial(() -> new int[4]);
+
+        FartcoinHashState(String genesis) {
+            extend(genesis);
+        }
+
+        // Appends an accepted nonce to the chain
+        void extend(String nonce) {
+            spare = ensureCapacity(spare, limbsNeeded(nonce));
+            int length = append(committed, committedLength, nonce, spare);
+            int[] tmp = committed;
+            committed = spare;
+            spare = tmp;
+            committedLength = length;
+        }
+
+        // hash(chain + nonce), built in the calling thread's scratch buffer; safe to call from
+        // several threads at once as long as nobody extends the chain meanwhile
+        BigInteger valueWith(String nonce) {
+            int[] out = ensureCapacity(scratch.get(), limbsNeeded(nonce));
+            scratch.set(out);
+            return toBigInteger(out, append(committed, committedLength, nonce, out));
+        }
+
+        private static int[] ensureCapacity(int[] limbs, int needed) {
+            return limbs.length >= needed ? limbs : new int[Math.max(needed, 2 * limbs.length)];
+        }
+
+        // Room for the shifted chain plus one spill limb for the top character bits
+        private int limbsNeeded(String nonce) {
+            return committedLength + (nonce.length() >>> 5) + 2;
+        }
+
+        // Writes hash(src + nonce) into dst and returns the number of limbs in use
+        private static int append(int[] src, int srcLength, String nonce, int[] dst) {
+            int m = nonce.length();
+            int wordShift = m >>> 5, bitShift = m & 31;
+            int needed = srcLength + wordShift + 2;
+            java.util.Arrays.fill(dst, 0, needed, 0);
+
+            // Shift the committed hash left by m bits, one limb at a time
+            for (int i = 0; i < srcLength; i++) {
+                long shifted = (src[i] & 0xFFFFFFFFL) << bitShift;
+                dst[i + wordShift] |= (int) shifted;
+                dst[i + wordShift + 1] |= (int) (shifted >>> 32);
+            }
+            // Character j was shifted m - 1 - j more times, so xor it in at that bit position
+            for (int j = 0; j < m; j++) {
+                int pos = m - 1 - j;
+                long bits = (long) nonce.charAt(j) << (pos & 31);
+                dst[pos >>> 5] ^= (int) bits;
+                dst[(pos >>> 5) + 1] ^= (int) (bits >>> 32);
+            }
+
+            // Drop leading zero limbs so the length reflects the real bit length
+            int length = needed;
+            while (length > 0 && dst[length - 1] == 0) {
+                length--;
+            }
+            return length;
+        }
+
+        private static BigInteger toBigInteger(int[] limbs, int length) {
+            // BigInteger takes big-endian bytes, so write the limbs from the top down
+            byte[] bytes = new byte[length * 4];
+            for (int i = 0; i < length; i++) {
+                int limb = limbs[length - 1 - i];
+                bytes[4 * i] = (byte) (limb >>> 24);
+                bytes[4 * i + 1] = (byte) (limb >>> 16);
+                bytes[4 * i + 2] = (byte) (limb >>> 8);
+                bytes[4 * i + 3] = (byte) limb;
+            }
+            return new BigInteger(1, bytes);
+        }
     }
     
-    // Main processing method
+    /*
+     * Main processing method.
+     *
+     * A submission's verdict depends on the chain left by every earlier acceptance, but most
+     * submissions are rejected and leave the chain unchanged. So a window of upcoming
+     * submissions is tested against the current chain in parallel, and the verdicts are then
+     * read back in order. Everything up to the first acceptance is final; the acceptance
+     * extends the chain and the next window starts right after it. The printed output is
+     * exactly what testing one submission at a time would print.
+     */
     public void process() {
         Scanner scanner = new Scanner(System.in);
         int n = Integer.parseInt(scanner.nextLine());
-        String blockchain = "fartcoin";
+        FartcoinHashState blockchain = new FartcoinHashState("fartcoin");
         int acceptedCount = 0;
-        
+
+        // Read every submission up front; blank lines produce no output at all
+        java.util.List<String> usernames = new java.util.ArrayList<>();
+        java.util.List<String> nonces = new java.util.ArrayList<>();
         for (int i = 0; i < n; i++) {
             String line = scanner.nextLine().trim();
             if (line.isEmpty()) {
                 continue;
             }
-            
-            String username;
-            String nonce;
-            
             String[] parts = line.split("\\s+", 2);
-            username = parts[0];
-            
-            if (parts.length < 2) {
-                // No nonce provided
-                System.out.println(username + " rejected " + acceptedCount);
-                continue;
+            usernames.add(parts[0]);
+            // A missing nonce is stored as null and always rejected
+            nonces.add(parts.length < 2 ? null : parts[1]);
+        }
+        scanner.close();
+
+        // Enough speculative work to keep every core busy between two acceptances
+        java.util.concurrent.ForkJoinPool pool = java.util.concurrent.ForkJoinPool.commonPool();
+        int window = 2 * Math.max(1, pool.getParallelism());
+        StringBuilder out = new StringBuilder();
+
+        int next = 0;
+        while (next < usernames.size()) {
+            int end = Math.min(usernames.size(), next + window);
+            // Tests still queued after an acceptance see this flag and skip their work
+            java.util.concurrent.atomic.AtomicBoolean stale = new java.util.concurrent.atomic.AtomicBoolean();
+            java.util.List<java.util.concurrent.ForkJoinTask<Boolean>> verdicts = new java.util.ArrayList<>();
+            for (int i = next; i < end; i++) {
+                String nonce = nonces.get(i);
+                verdicts.add(pool.submit(() -> nonce != null && !stale.get() && isPrime(blockchain.valueWith(nonce))));
             }
-            
-            nonce = parts[1];
-            
-            
-            String newBlockchain = blockchain + nonce;
-            BigInteger h = fartcoinHash(newBlockchain);
-                
-            
-            if (isPrime(h)) {
-                acceptedCount++;
-                blockchain = newBlockchain;
-                System.out.println(username + " accepted " + acceptedCount);
-            } else {
-                System.out.println(username + " rejected " + acceptedCount);
+
+            // Consume verdicts in submission order until the chain changes
+            int resume = end;
+            for (int i = next; i < end; i++) {
+                if (verdicts.get(i - next).join()) {
+                    acceptedCount++;
+                    out.append(usernames.get(i)).append(" accepted ").append(acceptedCount).append('\n');
+                    // Later verdicts were computed against the old chain: drop them, and wait
+                    // for the ones already running so nobody reads the chain while it changes
+                    stale.set(true);
+                    for (int j = i + 1; j < end; j++) {
+                        verdicts.get(j - next).join();
+                    }
+                    blockchain.extend(nonces.get(i));
+                    resume = i + 1;
+                    break;
+                }
+                out.append(usernames.get(i)).append(" rejected ").append(acceptedCount).append('\n');
             }
+            next = resume;
         }
-        
-        scanner.close();
+
+        System.out.print(out);
     }
-    
     public static void main(String[] args) {
         pcSol_java solution = new pcSol_java();
         solution.process();
@@ -1,4 +1,14 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class timSort {
 
@@ -12,196 +22,1744 @@ public class timSort {
         return n + r;
     }
 
-    // augmented to also detect for descending runs and reverse them in place 
-    public static void insertionSort(int[] arr, int left, int right) {
-        // check for descending run if the first two elements are out of order
-        if (left < right && arr[left] > arr[left + 1]) {
-            boolean isDesc = true;
-            for (int k = left; k < right; k++) {
-                if (arr[k] < arr[k + 1]) {
-                    // found an increasing segment so run is not descending
-                    isDesc = false;
-                    break;
+    // find the natural run starting at left and return its last index
+    // a strictly descending run is reversed in place so every run comes back ascending
+    // (strict, so reversing never swaps equal elements and the sort stays stable)
+    public static int countRunAndMakeAscending(int[] arr, int left, int right) {
+        int runEnd = left + 1;
+        if (runEnd > right) {
+            return left;    // a single element is a run by itself
+        }
+        if (arr[runEnd] < arr[left]) {
+            // strictly descending: extend while each element is smaller than the one before
+            while (runEnd < right && arr[runEnd + 1] < arr[runEnd]) {
+                runEnd++;
+            }
+            reverseRange(arr, left, runEnd);
+        } else {
+            // ascending (non-decreasing): extend while order holds
+            while (runEnd < right && arr[runEnd + 1] >= arr[runEnd]) {
+                runEnd++;
+            }
+        }
+        return runEnd;
+    }
+
+    // reverse arr[left..right] in place
+    public static void reverseRange(int[] arr, int left, int right) {
+        while (left < right) {
+            int temp = arr[left];
+            arr[left] = arr[right];
+            arr[right] = temp;
+            left++;
+            right--;
+        }
+    }
+
+    // insertion sort of arr[left..right] where arr[left..start-1] is already sorted
+    // binary search finds each insertion point in O(log n) comparisons; only the moves stay linear
+    public static void binaryInsertionSort(int[] arr, int left, int right, int start) {
+        binaryInsertionSort(arr, left, right, start, null);
+    }
+
+    private static void binaryInsertionSort(int[] arr, int left, int right, int start, SortStats stats) {
+        if (start == left) {
+            start++;
+        }
+        long cmp = 0;
+        for (; start <= right; start++) {
+            int pivot = arr[start];
+            // find the first position whose element is greater than pivot,
+            // placing pivot after any equal elements to keep the sort stable
+            int lo = left, hi = start;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                cmp++;
+                if (pivot < arr[mid]) {
+                    hi = mid;
+                } else {
+                    lo = mid + 1;
+                }
+            }
+            // shift the greater elements one slot right and drop pivot into the gap
+            System.arraycopy(arr, lo, arr, lo + 1, start - lo);
+            arr[lo] = pivot;
+        }
+        if (stats != null) {
+            stats.comparisons += cmp;
+        }
+    }
+    // galloping starts once one run wins this many comparisons in a row
+    private static final int MIN_GALLOP = 7;
+
+    // gallop method used to quickly find where key belongs in the sorted slice arr[base..base+len-1]
+    // the search starts at base+hint and moves outwards in steps of 1, 3, 7, 15, ... so a key that
+    // belongs near the hint is found in a few comparisons; a binary search then pinpoints it
+    // returns k such that arr[base+k-1] < key <= arr[base+k], i.e. key goes before any equal elements
+    public static int gallopLeft(int key, int[] arr, int base, int len, int hint) {
+        return gallopLeft(key, arr, base, len, hint, null);
+    }
+
+    // the gallop searches add the comparisons they make to stats when it is non-null
+    private static int gallopLeft(int key, int[] arr, int base, int len, int hint, SortStats stats) {
+        int lastOfs = 0, ofs = 1;
+        int cmp = 1;
+        if (key > arr[base + hint]) {
+            // gallop right until arr[base+hint+lastOfs] < key <= arr[base+hint+ofs]
+            int maxOfs = len - hint;
+            while (ofs < maxOfs && key > arr[base + hint + ofs]) {
+                cmp++;
+                lastOfs = ofs;
+                ofs = (ofs << 1) + 1;
+                if (ofs <= 0) {     // int overflow
+                    ofs = maxOfs;
                 }
             }
-            if (isDesc) {
-                // reverse in-place
-                int i = left, j = right;
-                while (i < j) {
-                    int temp = arr[i];
-                    arr[i] = arr[j];
-                    arr[j] = temp;
-                    i++;
-                    j--;
+            if (ofs < maxOfs) {
+                cmp++;      // the comparison that ended the loop
+            }
+            if (ofs > maxOfs) {
+                ofs = maxOfs;
+            }
+            // make both offsets relative to base
+            lastOfs += hint;
+            ofs += hint;
+        } else {
+            // gallop left until arr[base+hint-ofs] < key <= arr[base+hint-lastOfs]
+            int maxOfs = hint + 1;
+            while (ofs < maxOfs && key <= arr[base + hint - ofs]) {
+                cmp++;
+                lastOfs = ofs;
+                ofs = (ofs << 1) + 1;
+                if (ofs <= 0) {     // int overflow
+                    ofs = maxOfs;
                 }
-                return; // sorted run
             }
+            if (ofs < maxOfs) {
+                cmp++;
+            }
+            if (ofs > maxOfs) {
+                ofs = maxOfs;
+            }
+            // make both offsets relative to base (and swap them, since we searched backwards)
+            int temp = lastOfs;
+            lastOfs = hint - ofs;
+            ofs = hint - temp;
         }
-        // if run is not descending use standard insertionsort implementation
-        for (int i = left + 1; i <= right; i++) {
-            int temp = arr[i];
-            int j = i - 1;
-            while (j >= left && arr[j] > temp) {
-                arr[j + 1] = arr[j];
-                j--;
+        // now arr[base+lastOfs] < key <= arr[base+ofs]: binary search the gap in between
+        lastOfs++;
+        while (lastOfs < ofs) {
+            int mid = lastOfs + ((ofs - lastOfs) >>> 1);
+            cmp++;
+            if (key > arr[base + mid]) {
+                lastOfs = mid + 1;
+            } else {
+                ofs = mid;
             }
-            arr[j + 1] = temp;
         }
+        if (stats != null) {
+            stats.comparisons += cmp;
+        }
+        return ofs;
     }
-    // gallop method used to quickly find where x belongs in a sorted array
-    public static int gallop(int x, int[] arr, int start) {
-        int hi = 1;
-        int n = arr.length;
-        // exponential search: multilpy hi by 2 until its idx is >= x
-        // the current element in the "winning" or greater list or the end of the list is reached
-        while (start + hi < n && x > arr[start + hi]) {
-            hi *= 2;
-        }
-        // binary search between the second to last element checked and the element selected to pinpoint
-        // where x belongs
-        int lo = hi / 2;
-        hi = Math.min(start + hi, n);
-        while (lo < hi) {
-            int mid = (lo + hi) / 2;
-            if (x > arr[mid]) {
-                lo = mid + 1;
+
+    // like gallopLeft, but key goes after any equal elements:
+    // returns k such that arr[base+k-1] <= key < arr[base+k]
+    public static int gallopRight(int key, int[] arr, int base, int len, int hint) {
+        return gallopRight(key, arr, base, len, hint, null);
+    }
+
+    private static int gallopRight(int key, int[] arr, int base, int len, int hint, SortStats stats) {
+        int lastOfs = 0, ofs = 1;
+        int cmp = 1;
+        if (key < arr[base + hint]) {
+            // gallop left until arr[base+hint-ofs] <= key < arr[base+hint-lastOfs]
+            int maxOfs = hint + 1;
+            while (ofs < maxOfs && key < arr[base + hint - ofs]) {
+                cmp++;
+                lastOfs = ofs;
+                ofs = (ofs << 1) + 1;
+                if (ofs <= 0) {     // int overflow
+                    ofs = maxOfs;
+                }
+            }
+            if (ofs < maxOfs) {
+                cmp++;
+            }
+            if (ofs > maxOfs) {
+                ofs = maxOfs;
+            }
+            int temp = lastOfs;
+            lastOfs = hint - ofs;
+            ofs = hint - temp;
+        } else {
+            // gallop right until arr[base+hint+lastOfs] <= key < arr[base+hint+ofs]
+            int maxOfs = len - hint;
+            while (ofs < maxOfs && key >= arr[base + hint + ofs]) {
+                cmp++;
+                lastOfs = ofs;
+                ofs = (ofs << 1) + 1;
+                if (ofs <= 0) {     // int overflow
+                    ofs = maxOfs;
+                }
+            }
+            if (ofs < maxOfs) {
+                cmp++;
+            }
+            if (ofs > maxOfs) {
+                ofs = maxOfs;
+            }
+            lastOfs += hint;
+            ofs += hint;
+        }
+        // now arr[base+lastOfs] <= key < arr[base+ofs]: binary search the gap in between
+        lastOfs++;
+        while (lastOfs < ofs) {
+            int mid = lastOfs + ((ofs - lastOfs) >>> 1);
+            cmp++;
+            if (key < arr[base + mid]) {
+                ofs = mid;
             } else {
-                hi = mid;
+                lastOfs = mid + 1;
             }
         }
-        return lo;  // x's sorted position
+        if (stats != null) {
+            stats.comparisons += cmp;
+        }
+        return ofs;
     }
 
-    // combine two sorted subarrays [left,mid] and [mid+1,right]
-    // track consecutive wins to trigger galloping mode to reduce the number of individual comparisons
-    public static void merge(int[] arr, int left, int mid, int right) {
-        int[] leftPart = Arrays.copyOfRange(arr, left, mid + 1);
-        int[] rightPart = Arrays.copyOfRange(arr, mid + 1, right + 1);
+    // how the pending runs are chosen for merging
+    public enum MergePolicy {
+        // the original timsort rule on the lengths of the top runs of the stack
+        CLASSIC,
+        // Munro and Wild's powersort: each boundary between two runs gets a "power", its depth in
+        // a perfectly balanced merge tree over the array, and runs merge in that tree's order,
+        // which keeps the merge cost within a small constant of the optimum for the run lengths
+        POWERSORT
+    }
 
-        int i = 0, j = 0, k = left;
-        int minGallop = 7;
-        int countLeft = 0, countRight = 0;
-        
-        // core merge logic
-        while (i < leftPart.length && j < rightPart.length) {
-            if (leftPart[i] <= rightPart[j]) {
-                arr[k] = leftPart[i];
-                i++;
-                countLeft++;    // keeping track of left subarray "wins"
-                countRight = 0;
-            } else {
-                arr[k] = rightPart[j];
-                j++;
-                countRight++;   // keeping track of right subarray "wins"
-                countLeft = 0;
+    // counters filled in by a sort when a SortStats is attached; they accumulate across sorts
+    // until reset
+    public static final class SortStats {
+        public long runs;           // natural runs found (before short ones are padded)
+        public long merges;         // merges of two runs
+        public long gallops;        // times a merge switched into galloping mode
+        public long comparisons;    // element comparisons, including the ones made while galloping
+        public long bytesMoved;     // bytes copied by merges, into tmp and back into the array
+
+        public void reset() {
+            runs = merges = gallops = comparisons = bytesMoved = 0;
+        }
+
+        @Override
+        public String toString() {
+            return "runs=" + runs + " merges=" + merges + " gallops=" + gallops
+                    + " comparisons=" + comparisons + " bytesMoved=" + bytesMoved;
+        }
+    }
+
+    private final MergePolicy policy;
+    private final SortStats stats;      // null when not instrumented
+
+    public timSort() {
+        this(MergePolicy.CLASSIC, null);
+    }
+
+    public timSort(MergePolicy policy, SortStats stats) {
+        this.policy = policy;
+        this.stats = stats;
+    }
+
+    // the array being sorted
+    private int[] arr;
+    // scratch space for merges: it only ever holds the smaller of two runs, so it never needs
+    // more than half the array, and it is kept between merges (and between sorts) so that
+    // steady-state sorting allocates nothing
+    private int[] tmp = new int[256];
+    // pending runs as two parallel stacks: run i starts at runBase[i] and holds runLen[i] elements
+    private int[] runBase = new int[85];
+    private int[] runLen = new int[85];
+    // for powersort: runPower[i] is the power of the boundary between run i and run i+1
+    private int[] runPower = new int[85];
+    private int stackSize = 0;
+    // how many consecutive wins it takes to enter galloping mode; it adapts during a sort,
+    // rising when galloping does not pay off and falling when it does
+    private int minGallop = MIN_GALLOP;
+
+    // make sure tmp can hold minCapacity elements, growing geometrically but never past n/2
+    private int[] ensureCapacity(int minCapacity) {
+        if (tmp.length < minCapacity) {
+            int newSize = Integer.highestOneBit(minCapacity) << 1;
+            if (newSize < 0 || newSize > arr.length >>> 1) {
+                newSize = Math.max(minCapacity, arr.length >>> 1);
             }
-            k++;
+            tmp = new int[newSize];
+        }
+        return tmp;
+    }
+
+    // merge the sorted adjacent runs arr[base1..base1+len1-1] and arr[base2..base2+len2-1]
+    // only the smaller run is copied out: a smaller left run merges from the front, a smaller
+    // right run merges from the back, so the output never overwrites unread input
+    private void merge(int base1, int len1, int base2, int len2) {
+        // elements of run 1 that are <= the first element of run 2 are already in place
+        int k = gallopRight(arr[base2], arr, base1, len1, 0, stats);
+        base1 += k;
+        len1 -= k;
+        if (len1 == 0) {
+            return;
+        }
+        // likewise elements of run 2 that are >= the last element of run 1
+        len2 = gallopLeft(arr[base1 + len1 - 1], arr, base2, len2, len2 - 1, stats);
+        if (len2 == 0) {
+            return;
+        }
+
+        if (stats != null) {
+            // the smaller run is copied into tmp, then every element is written back once
+            stats.bytesMoved += 4L * (len1 + len2 + Math.min(len1, len2));
+        }
+        if (len1 <= len2) {
+            mergeLo(base1, len1, base2, len2);
+        } else {
+            mergeHi(base1, len1, base2, len2);
+        }
+    }
+
+    // merge with the left run in tmp, filling arr from the left
+    // requires arr[base2] < arr[base1] and the last element of run 1 to be greater than all of run 2,
+    // which the trimming in merge guarantees
+    private void mergeLo(int base1, int len1, int base2, int len2) {
+        int[] a = arr;
+        int[] t = ensureCapacity(len1);
+        System.arraycopy(a, base1, t, 0, len1);
+        int cursor1 = 0, cursor2 = base2, dest = base1;
+
+        // the first element of run 2 is known to come first
+        a[dest++] = a[cursor2++];
+        if (--len2 == 0) {
+            System.arraycopy(t, cursor1, a, dest, len1);
+            return;
+        }
+        if (len1 == 1) {
+            // the last element of run 1 is known to come last
+            System.arraycopy(a, cursor2, a, dest, len2);
+            a[dest + len2] = t[cursor1];
+            return;
+        }
+
+        int minGallop = this.minGallop;
+        long cmp = 0, gallops = 0;
+        outer:
+        while (true) {
+            // one-at-a-time mode: count consecutive wins for each run
+            int count1 = 0, count2 = 0;
+            do {
+                cmp++;
+                if (a[cursor2] < t[cursor1]) {
+                    a[dest++] = a[cursor2++];
+                    count2++;
+                    count1 = 0;
+                    if (--len2 == 0) {
+                        break outer;
+                    }
+                } else {
+                    a[dest++] = t[cursor1++];
+                    count1++;
+                    count2 = 0;
+                    if (--len1 == 1) {
+                        break outer;
+                    }
+                }
+            } while ((count1 | count2) < minGallop);
 
-            // one side wins individual comparisons more than min_gallop times
-            // if left run is smaller call gallop to find the index of the right one where x fits
-            if (countLeft >= minGallop) {
-                int pos = gallop(rightPart[j], leftPart, i);
-                // copy the part of array that was skipped over
-                while (i < pos) {
-                    arr[k] = leftPart[i];
-                    i++;
-                    k++;
+            // galloping mode: one run keeps winning, so find how far it stays ahead and copy
+            // that whole stretch at once; stay here while the stretches remain long
+            gallops++;
+            do {
+                count1 = gallopRight(a[cursor2], t, cursor1, len1, 0, stats);
+                if (count1 != 0) {
+                    System.arraycopy(t, cursor1, a, dest, count1);
+                    dest += count1;
+                    cursor1 += count1;
+                    len1 -= count1;
+                    if (len1 <= 1) {
+                        break outer;
+                    }
+                }
+                a[dest++] = a[cursor2++];
+                if (--len2 == 0) {
+                    break outer;
                 }
-                countLeft = 0;  // reset counter
 
-            // if right run is smaller call gallop to find the index of the left one where x fits
-            } else if (countRight >= minGallop) {
-                int pos = gallop(leftPart[i], rightPart, j);
-                // copy the part of array that was skipped over
-                while (j < pos) {
-                    arr[k] = rightPart[j];
-                    j++;
-                    k++;
+                count2 = gallopLeft(t[cursor1], a, cursor2, len2, 0, stats);
+                if (count2 != 0) {
+                    // the output trails cursor2, so this copy moves the stretch left within arr
+                    System.arraycopy(a, cursor2, a, dest, count2);
+                    dest += count2;
+                    cursor2 += count2;
+                    len2 -= count2;
+                    if (len2 == 0) {
+                        break outer;
+                    }
+                }
+                a[dest++] = t[cursor1++];
+                if (--len1 == 1) {
+                    break outer;
                 }
-                countRight = 0; // reset counter
+                minGallop--;    // galloping is paying off, make it easier to enter next time
+            } while (count1 >= MIN_GALLOP | count2 >= MIN_GALLOP);
+            // galloping stopped paying off: make it harder to enter again
+            if (minGallop < 0) {
+                minGallop = 0;
             }
+            minGallop += 2;
+        }
+        this.minGallop = minGallop < 1 ? 1 : minGallop;
+        if (stats != null) {
+            stats.comparisons += cmp;
+            stats.gallops += gallops;
+        }
+
+        if (len1 == 1) {
+            // the rest of run 2 goes first, then the last (largest) element of run 1
+            System.arraycopy(a, cursor2, a, dest, len2);
+            a[dest + len2] = t[cursor1];
+        } else {
+            // run 2 is used up; what is left of run 1 is in tmp
+            System.arraycopy(t, cursor1, a, dest, len1);
+        }
+    }
+
+    // merge with the right run in tmp, filling arr from the right
+    // the mirror image of mergeLo, with the same preconditions
+    private void mergeHi(int base1, int len1, int base2, int len2) {
+        int[] a = arr;
+        int[] t = ensureCapacity(len2);
+        System.arraycopy(a, base2, t, 0, len2);
+        int cursor1 = base1 + len1 - 1, cursor2 = len2 - 1, dest = base2 + len2 - 1;
+
+        // the last element of run 1 is known to come last
+        a[dest--] = a[cursor1--];
+        if (--len1 == 0) {
+            System.arraycopy(t, 0, a, dest - (len2 - 1), len2);
+            return;
         }
+        if (len2 == 1) {
+            // the first element of run 2 is known to come first
+            dest -= len1;
+            cursor1 -= len1;
+            System.arraycopy(a, cursor1 + 1, a, dest + 1, len1);
+            a[dest] = t[cursor2];
+            return;
+        }
+
+        int minGallop = this.minGallop;
+        long cmp = 0, gallops = 0;
+        outer:
+        while (true) {
+            // one-at-a-time mode, walking both runs backwards; on ties run 2 goes last
+            int count1 = 0, count2 = 0;
+            do {
+                cmp++;
+                if (t[cursor2] < a[cursor1]) {
+                    a[dest--] = a[cursor1--];
+                    count1++;
+                    count2 = 0;
+                    if (--len1 == 0) {
+                        break outer;
+                    }
+                } else {
+                    a[dest--] = t[cursor2--];
+                    count2++;
+                    count1 = 0;
+                    if (--len2 == 1) {
+                        break outer;
+                    }
+                }
+            } while ((count1 | count2) < minGallop);
+
+            // galloping mode, searching back from the end of each run
+            gallops++;
+            do {
+                count1 = len1 - gallopRight(t[cursor2], a, base1, len1, len1 - 1, stats);
+                if (count1 != 0) {
+                    // the output is ahead of cursor1, so this copy moves the stretch right within arr
+                    dest -= count1;
+                    cursor1 -= count1;
+                    len1 -= count1;
+                    System.arraycopy(a, cursor1 + 1, a, dest + 1, count1);
+                    if (len1 == 0) {
+                        break outer;
+                    }
+                }
+                a[dest--] = t[cursor2--];
+                if (--len2 == 1) {
+                    break outer;
+                }
 
-        // copy over any leftover elements, only 1 will run, the other is already done
-        while (i < leftPart.length) {
-            arr[k] = leftPart[i];
-            i++;
-            k++;
+                count2 = len2 - gallopLeft(a[cursor1], t, 0, len2, len2 - 1, stats);
+                if (count2 != 0) {
+                    dest -= count2;
+                    cursor2 -= count2;
+                    len2 -= count2;
+                    System.arraycopy(t, cursor2 + 1, a, dest + 1, count2);
+                    if (len2 <= 1) {
+                        break outer;
+                    }
+                }
+                a[dest--] = a[cursor1--];
+                if (--len1 == 0) {
+                    break outer;
+                }
+                minGallop--;    // galloping is paying off, make it easier to enter next time
+            } while (count1 >= MIN_GALLOP | count2 >= MIN_GALLOP);
+            // galloping stopped paying off: make it harder to enter again
+            if (minGallop < 0) {
+                minGallop = 0;
+            }
+            minGallop += 2;
+        }
+        this.minGallop = minGallop < 1 ? 1 : minGallop;
+        if (stats != null) {
+            stats.comparisons += cmp;
+            stats.gallops += gallops;
         }
 
-        while (j < rightPart.length) {
-            arr[k] = rightPart[j];
-            j++;
-            k++;
+        if (len2 == 1) {
+            // the rest of run 1 goes last, preceded by the first (smallest) element of run 2
+            dest -= len1;
+            cursor1 -= len1;
+            System.arraycopy(a, cursor1 + 1, a, dest + 1, len1);
+            a[dest] = t[cursor2];
+        } else {
+            // run 1 is used up; what is left of run 2 is in tmp
+            System.arraycopy(t, 0, a, dest - (len2 - 1), len2);
         }
     }
 
     // core timsort logic: split the array into runs, sort each, then merge according to policy
-    public static void timsort(int[] arr) {
+    public void sort(int[] arr) {
+        sort(arr, 0, arr.length);
+    }
+
+    // sort only arr[lo..hi-1]
+    public void sort(int[] arr, int lo, int hi) {
         // initialize variables
-        int n = arr.length;
-        int minRun = calculateMinRun(n);
-        List<int[]> runStack = new ArrayList<>();
+        this.arr = arr;
+        stackSize = 0;
+        minGallop = MIN_GALLOP;
+        int n = hi;
+        int minRun = calculateMinRun(hi - lo);
 
-        // first pass: split into runs and call the augmented insertionsort
-        int i = 0;
+        // first pass: find the natural runs, extending short ones to minRun
+        int i = lo;
         while (i < n) {
-            // end of current run is either i + minRun (offset) or the end of the list
-            int runEnd = Math.min(i + minRun - 1, n - 1);
-            insertionSort(arr, i, runEnd);
-            runStack.add(new int[]{i, runEnd}); // push the run to the stack
+            // take whatever ascending (or reversed descending) run the data already has
+            int runEnd = countRunAndMakeAscending(arr, i, n - 1);
+            if (stats != null) {
+                stats.runs++;
+                // one comparison per step along the run, plus the one that ended it
+                stats.comparisons += runEnd - i + (runEnd < n - 1 ? 1 : 0);
+            }
+            // a short run is padded to minRun (or the end of the list) with binary insertion
+            if (runEnd - i + 1 < minRun) {
+                int forcedEnd = Math.min(i + minRun - 1, n - 1);
+                binaryInsertionSort(arr, i, forcedEnd, runEnd + 1, stats);
+                runEnd = forcedEnd;
+            }
+            if (policy == MergePolicy.POWERSORT) {
+                powersortCollapse(i, runEnd - i + 1, lo, hi - lo);
+                pushRun(i, runEnd - i + 1);
+            } else {
+                pushRun(i, runEnd - i + 1);     // push the run to the stack
+                mergeCollapse();
+            }
             i = runEnd + 1;     // update offset
-            mergeCollapse(arr, runStack);
         }
         // merge the runs on the stack according to the merge policy until there is 1 run on the stack
-        while (runStack.size() > 1) {
-            mergeAt(arr, runStack, runStack.size() - 2);
+        while (stackSize > 1) {
+            mergeAt(stackSize - 2);
+        }
+        this.arr = null;    // don't keep the caller's array alive
+    }
+
+    // sort with a throwaway sorter; keep a timSort instance around to reuse its buffers
+    public static void timsort(int[] arr) {
+        new timSort().sort(arr);
+    }
+
+    // push a run onto the stack, growing the stack only in the (rare) case it is full
+    private void pushRun(int base, int len) {
+        if (stackSize == runBase.length) {
+            runBase = Arrays.copyOf(runBase, 2 * stackSize);
+            runLen = Arrays.copyOf(runLen, 2 * stackSize);
+            runPower = Arrays.copyOf(runPower, 2 * stackSize);
         }
+        runBase[stackSize] = base;
+        runLen[stackSize] = len;
+        stackSize++;
     }
 
     // enforces timsort's merge policy
-    public static void mergeCollapse(int[] arr, List<int[]> runStack) {
-        while (runStack.size() > 2) {
-            // get the length of the first three runs on the stack
-            // C is at the top of the stack, A is closest to the bottom
-            int[] A = runStack.get(runStack.size() - 3);
-            int[] B = runStack.get(runStack.size() - 2);
-            int[] C = runStack.get(runStack.size() - 1);
-            int lenA = A[1] - A[0] + 1;
-            int lenB = B[1] - B[0] + 1;
-            int lenC = C[1] - C[0] + 1;
-
-            // per merge policy: 
+    private void mergeCollapse() {
+        while (stackSize > 1) {
+            // get the length of the top runs on the stack
+            // C is at the top of the stack, A is closest to the bottom, Z is below A
+            int lenB = runLen[stackSize - 2];
+            int lenC = runLen[stackSize - 1];
+
+            // per merge policy:
             // A should be larger than B + C
             // B should be larger than C
-            if (lenA <= lenB + lenC || lenB <= lenC) {
-                if (lenA < lenC) {
-                    mergeAt(arr, runStack, runStack.size() - 3);
+            // checking only the top three runs is not enough: merging B and C can break the rule
+            // one level further down, so Z should also be larger than A + B
+            if (stackSize > 2 && runLen[stackSize - 3] <= lenB + lenC
+                    || stackSize > 3 && runLen[stackSize - 4] <= runLen[stackSize - 3] + lenB) {
+                if (runLen[stackSize - 3] < lenC) {
+                    mergeAt(stackSize - 3);
                 } else {
-                    mergeAt(arr, runStack, runStack.size() - 2);
+                    mergeAt(stackSize - 2);
                 }
+            } else if (lenB <= lenC) {
+                // includes the case of 2 runs left on the stack
+                mergeAt(stackSize - 2);
             } else {
                 // merge policy holds, no merges necessary
                 break;
             }
         }
-        // merge when there are 2 runs left on the stack
-        if (runStack.size() == 2 && (runStack.get(runStack.size() - 2)[1] - runStack.get(runStack.size() - 2)[0] + 1) <= (runStack.get(runStack.size() - 1)[1] - runStack.get(runStack.size() - 1)[0] + 1)) {
-            mergeAt(arr, runStack, runStack.size() - 2);
+    }
+
+    // powersort: before the run [base, base+len) is pushed, merge every pending boundary that lies
+    // deeper in the balanced merge tree than the new boundary between the top run and this one
+    // (lo and n locate the slice being sorted, since powers are relative to it)
+    private void powersortCollapse(int base, int len, int lo, int n) {
+        if (stackSize == 0) {
+            return;
+        }
+        int top = stackSize - 1;
+        int power = nodePower(runBase[top] - lo, runLen[top], len, n);
+        while (stackSize > 1 && runPower[stackSize - 2] > power) {
+            mergeAt(stackSize - 2);
+        }
+        runPower[stackSize - 1] = power;
+    }
+
+    // the power of the boundary between adjacent runs [s1, s1+n1) and [s1+n1, s1+n1+n2) of an n
+    // element array: the first bit at which the binary fractions midpoint1/n and midpoint2/n differ
+    // a and b hold twice the midpoints so everything stays in integers
+    static int nodePower(int s1, int n1, int n2, int n) {
+        long a = 2L * s1 + n1;
+        long b = a + n1 + n2;
+        int power = 0;
+        while (true) {
+            power++;
+            if (a >= n) {
+                // both fractions have a 1 here
+                a -= n;
+                b -= n;
+            } else if (b >= n) {
+                // they differ
+                break;
+            }
+            a <<= 1;
+            b <<= 1;
+        }
+        return power;
+    }
+
+    // merge runs i and i+1 on the stack
+    private void mergeAt(int i) {
+        int base1 = runBase[i], len1 = runLen[i];
+        int base2 = runBase[i + 1], len2 = runLen[i + 1];
+        // update stack: run i now covers both, and if they were the 2nd and 3rd from the top
+        // the top run slides down one slot
+        runLen[i] = len1 + len2;
+        if (i == stackSize - 3) {
+            runBase[i + 1] = runBase[i + 2];
+            runLen[i + 1] = runLen[i + 2];
+            runPower[i + 1] = runPower[i + 2];
+        }
+        stackSize--;
+        if (stats != null) {
+            stats.merges++;
+        }
+        merge(base1, len1, base2, len2);
+    }
+
+    // inputs below this size are not worth splitting and always take the sequential path
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+    // smallest segment handed to a single sequential sorter, and smallest merge worth splitting
+    private static final int MIN_SEGMENT = 1 << 13;
+    private static final int MIN_MERGE = 1 << 13;
+
+    // sort arr using the common fork-join pool
+    public static void parallelTimsort(int[] arr) {
+        parallelTimsort(arr, ForkJoinPool.commonPool());
+    }
+
+    // parallel timsort: the array is cut into a few segments per worker, each segment is
+    // timsorted on its own (so natural runs inside a segment are still found), and the sorted
+    // segments are merged pairwise up a tree whose large merges are themselves split in two
+    // the merges alternate between arr and one n-element buffer, and every split keeps equal
+    // elements in their original order, so the result is stable like the sequential sort
+    public static void parallelTimsort(int[] arr, ForkJoinPool pool) {
+        int n = arr.length;
+        int workers = pool.getParallelism();
+        if (n < PARALLEL_THRESHOLD || workers <= 1) {
+            timsort(arr);
+            return;
         }
+        int segment = Math.max(MIN_SEGMENT, (n + 4 * workers - 1) / (4 * workers));
+        pool.invoke(new SortTask(arr, new int[n], 0, n, segment, false));
     }
-    // merge runs at a location on the stack
-    public static void mergeAt(int[] arr, List<int[]> runStack, int i) {
-        // copy subsections
-        int[] run1 = runStack.get(i);
-        int[] run2 = runStack.get(i + 1);
-        merge(arr, run1[0], run1[1], run2[1]);
-        // update stack
-        runStack.set(i, new int[]{run1[0], run2[1]});
-        runStack.remove(i + 1);
+
+    // sorts the data in a[lo..hi-1]; the result ends up in w instead of a when toW is set
+    private static final class SortTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] a, w;
+        private final int lo, hi, segment;
+        private final boolean toW;
+
+        SortTask(int[] a, int[] w, int lo, int hi, int segment, boolean toW) {
+            this.a = a;
+            this.w = w;
+            this.lo = lo;
+            this.hi = hi;
+            this.segment = segment;
+            this.toW = toW;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= segment) {
+                new timSort().sort(a, lo, hi);
+                if (toW) {
+                    System.arraycopy(a, lo, w, lo, hi - lo);
+                }
+                return;
+            }
+            // the halves are sorted into the array this level does not end in, then merged across
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new SortTask(a, w, lo, mid, segment, !toW),
+                      new SortTask(a, w, mid, hi, segment, !toW));
+            int[] src = toW ? a : w;
+            int[] dst = toW ? w : a;
+            new MergeTask(src, lo, mid, mid, hi, dst, lo).compute();
+        }
     }
 
-    public static void main(String[] args) {
+    // stably merges the sorted runs src[lo1..hi1-1] and src[lo2..hi2-1] into dst starting at dstLo
+    private static final class MergeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] src, dst;
+        private final int lo1, hi1, lo2, hi2, dstLo;
+
+        MergeTask(int[] src, int lo1, int hi1, int lo2, int hi2, int[] dst, int dstLo) {
+            this.src = src;
+            this.dst = dst;
+            this.lo1 = lo1;
+            this.hi1 = hi1;
+            this.lo2 = lo2;
+            this.hi2 = hi2;
+            this.dstLo = dstLo;
+        }
+
+        @Override
+        protected void compute() {
+            int len1 = hi1 - lo1, len2 = hi2 - lo2;
+            if (len1 == 0 || len2 == 0 || src[hi1 - 1] <= src[lo2]) {
+                // already in order (always the case for presorted input): just copy both runs
+                System.arraycopy(src, lo1, dst, dstLo, len1);
+                System.arraycopy(src, lo2, dst, dstLo + len1, len2);
+                return;
+            }
+            if (len1 + len2 <= MIN_MERGE) {
+                mergeInto(src, lo1, hi1, lo2, hi2, dst, dstLo);
+                return;
+            }
+            // binary partition: split the longer run at its middle and find where that key falls
+            // in the other run, so that everything left of both cuts belongs before everything
+            // right of them; both halves can then be merged concurrently
+            // ties are cut so that equal elements of run 1 stay in front of those of run 2
+            int cut1, cut2;
+            if (len1 >= len2) {
+                cut1 = lo1 + (len1 >>> 1);
+                cut2 = lo2 + gallopLeft(src[cut1], src, lo2, len2, 0);
+            } else {
+                cut2 = lo2 + (len2 >>> 1);
+                cut1 = lo1 + gallopRight(src[cut2], src, lo1, len1, 0);
+            }
+            int dstMid = dstLo + (cut1 - lo1) + (cut2 - lo2);
+            invokeAll(new MergeTask(src, lo1, cut1, lo2, cut2, dst, dstLo),
+                      new MergeTask(src, cut1, hi1, cut2, hi2, dst, dstMid));
+        }
+    }
+
+    // plain stable two-way merge from src into a different array
+    private static void mergeInto(int[] src, int lo1, int hi1, int lo2, int hi2, int[] dst, int dest) {
+        while (lo1 < hi1 && lo2 < hi2) {
+            // on ties the element of run 1 goes first
+            dst[dest++] = src[lo2] < src[lo1] ? src[lo2++] : src[lo1++];
+        }
+        System.arraycopy(src, lo1, dst, dest, hi1 - lo1);
+        System.arraycopy(src, lo2, dst, dest + (hi1 - lo1), hi2 - lo2);
+    }
+
+    // sort a long[] (stable, so equal values keep their relative order)
+    public static void timsort(long[] arr) {
+        new LongTimSort().sort(arr, null);
+    }
+
+    // sort a double[] into the same order as Arrays.sort: -0.0 before 0.0 and NaNs last
+    // the values are mapped to longs that compare the same way, sorted, and mapped back
+    public static void timsort(double[] arr) {
+        long[] keys = new long[arr.length];
+        for (int i = 0; i < arr.length; i++) {
+            keys[i] = sortableBits(arr[i]);
+        }
+        new LongTimSort().sort(keys, null);
+        for (int i = 0; i < arr.length; i++) {
+            arr[i] = fromSortableBits(keys[i]);
+        }
+    }
+
+    // flip the magnitude bits of negative doubles so that signed long order matches numeric order
+    // (doubleToLongBits folds every NaN into one positive NaN, which lands after +infinity)
+    static long sortableBits(double d) {
+        long bits = Double.doubleToLongBits(d);
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    static double fromSortableBits(long key) {
+        return Double.longBitsToDouble(key ^ ((key >> 63) & Long.MAX_VALUE));
+    }
+
+    // argsort: returns the permutation p that lists indices by ascending keys[p[i]]
+    // equal keys keep ascending index order, so the keys are computed once up front instead of
+    // on every comparison, and ties fall back to the original order for free
+    public static int[] argsort(long[] keys) {
+        int[] perm = new int[keys.length];
+        for (int i = 0; i < perm.length; i++) {
+            perm[i] = i;
+        }
+        return argsort(perm, keys);
+    }
+
+    public static int[] argsort(double[] keys) {
+        int[] perm = new int[keys.length];
+        for (int i = 0; i < perm.length; i++) {
+            perm[i] = i;
+        }
+        return argsort(perm, keys);
+    }
+
+    // stably reorder perm (a list of indices into keys) by ascending keys[perm[i]] and return it
+    // since ties keep their current order, sorting by the least significant key first and the
+    // most significant key last gives a multi-key order without a comparator
+    public static int[] argsort(int[] perm, long[] keys) {
+        long[] k = new long[perm.length];
+        for (int i = 0; i < perm.length; i++) {
+            k[i] = keys[perm[i]];
+        }
+        new LongTimSort().sort(k, perm);
+        return perm;
+    }
+
+    public static int[] argsort(int[] perm, double[] keys) {
+        long[] k = new long[perm.length];
+        for (int i = 0; i < perm.length; i++) {
+            k[i] = sortableBits(keys[perm[i]]);
+        }
+        new LongTimSort().sort(k, perm);
+        return perm;
+    }
+
+    // the same algorithm specialized to long keys, with an optional int payload: when vals is
+    // non-null every move of a key moves vals at the same position along with it
+    // (the int[] sorter above is left as is so it pays nothing for the payload)
+    static final class LongTimSort {
+        private long[] arr;
+        private int[] vals;
+        private long[] tmp = new long[256];
+        private int[] tmpVals;      // only allocated when sorting with a payload
+        private int[] runBase = new int[85];
+        private int[] runLen = new int[85];
+        private int stackSize = 0;
+        private int minGallop = MIN_GALLOP;
+
+        // move one key (and its payload) from src[from] to dst[to]
+        private static void move(long[] src, int[] srcVals, int from, long[] dst, int[] dstVals, int to) {
+            dst[to] = src[from];
+            if (dstVals != null) {
+                dstVals[to] = srcVals[from];
+            }
+        }
+
+        // System.arraycopy for keys and payload together
+        private static void copy(long[] src, int[] srcVals, int from, long[] dst, int[] dstVals, int to, int len) {
+            System.arraycopy(src, from, dst, to, len);
+            if (dstVals != null) {
+                System.arraycopy(srcVals, from, dstVals, to, len);
+            }
+        }
+
+        // see countRunAndMakeAscending(int[], int, int)
+        static int countRunAndMakeAscending(long[] arr, int[] vals, int left, int right) {
+            int runEnd = left + 1;
+            if (runEnd > right) {
+                return left;
+            }
+            if (arr[runEnd] < arr[left]) {
+                while (runEnd < right && arr[runEnd + 1] < arr[runEnd]) {
+                    runEnd++;
+                }
+                reverseRange(arr, vals, left, runEnd);
+            } else {
+                while (runEnd < right && arr[runEnd + 1] >= arr[runEnd]) {
+                    runEnd++;
+                }
+            }
+            return runEnd;
+        }
+
+        static void reverseRange(long[] arr, int[] vals, int left, int right) {
+            while (left < right) {
+                long temp = arr[left];
+                arr[left] = arr[right];
+                arr[right] = temp;
+                if (vals != null) {
+                    int tempVal = vals[left];
+                    vals[left] = vals[right];
+                    vals[right] = tempVal;
+                }
+                left++;
+                right--;
+            }
+        }
+
+        // see binaryInsertionSort(int[], int, int, int)
+        static void binaryInsertionSort(long[] arr, int[] vals, int left, int right, int start) {
+            if (start == left) {
+                start++;
+            }
+            for (; start <= right; start++) {
+                long pivot = arr[start];
+                int pivotVal = vals != null ? vals[start] : 0;
+                int lo = left, hi = start;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (pivot < arr[mid]) {
+                        hi = mid;
+                    } else {
+                        lo = mid + 1;
+                    }
+                }
+                copy(arr, vals, lo, arr, vals, lo + 1, start - lo);
+                arr[lo] = pivot;
+                if (vals != null) {
+                    vals[lo] = pivotVal;
+                }
+            }
+        }
+
+        // see gallopLeft(int, int[], int, int, int)
+        static int gallopLeft(long key, long[] arr, int base, int len, int hint) {
+            int lastOfs = 0, ofs = 1;
+            if (key > arr[base + hint]) {
+                int maxOfs = len - hint;
+                while (ofs < maxOfs && key > arr[base + hint + ofs]) {
+                    lastOfs = ofs;
+                    ofs = (ofs << 1) + 1;
+                    if (ofs <= 0) {
+                        ofs = maxOfs;
+                    }
+                }
+                if (ofs > maxOfs) {
+                    ofs = maxOfs;
+                }
+                lastOfs += hint;
+                ofs += hint;
+            } else {
+                int maxOfs = hint + 1;
+                while (ofs < maxOfs && key <= arr[base + hint - ofs]) {
+                    lastOfs = ofs;
+                    ofs = (ofs << 1) + 1;
+                    if (ofs <= 0) {
+                        ofs = maxOfs;
+                    }
+                }
+                if (ofs > maxOfs) {
+                    ofs = maxOfs;
+                }
+                int temp = lastOfs;
+                lastOfs = hint - ofs;
+                ofs = hint - temp;
+            }
+            lastOfs++;
+            while (lastOfs < ofs) {
+                int mid = lastOfs + ((ofs - lastOfs) >>> 1);
+                if (key > arr[base + mid]) {
+                    lastOfs = mid + 1;
+                } else {
+                    ofs = mid;
+                }
+            }
+            return ofs;
+        }
+
+        // see gallopRight(int, int[], int, int, int)
+        static int gallopRight(long key, long[] arr, int base, int len, int hint) {
+            int lastOfs = 0, ofs = 1;
+            if (key < arr[base + hint]) {
+                int maxOfs = hint + 1;
+                while (ofs < maxOfs && key < arr[base + hint - ofs]) {
+                    lastOfs = ofs;
+                    ofs = (ofs << 1) + 1;
+                    if (ofs <= 0) {
+                        ofs = maxOfs;
+                    }
+                }
+                if (ofs > maxOfs) {
+                    ofs = maxOfs;
+                }
+                int temp = lastOfs;
+                lastOfs = hint - ofs;
+                ofs = hint - temp;
+            } else {
+                int maxOfs = len - hint;
+                while (ofs < maxOfs && key >= arr[base + hint + ofs]) {
+                    lastOfs = ofs;
+                    ofs = (ofs << 1) + 1;
+                    if (ofs <= 0) {
+                        ofs = maxOfs;
+                    }
+                }
+                if (ofs > maxOfs) {
+                    ofs = maxOfs;
+                }
+                lastOfs += hint;
+                ofs += hint;
+            }
+            lastOfs++;
+            while (lastOfs < ofs) {
+                int mid = lastOfs + ((ofs - lastOfs) >>> 1);
+                if (key < arr[base + mid]) {
+                    ofs = mid;
+                } else {
+                    lastOfs = mid + 1;
+                }
+            }
+            return ofs;
+        }
+
+        private void ensureCapacity(int minCapacity) {
+            if (tmp.length < minCapacity) {
+                int newSize = Integer.highestOneBit(minCapacity) << 1;
+                if (newSize < 0 || newSize > arr.length >>> 1) {
+                    newSize = Math.max(minCapacity, arr.length >>> 1);
+                }
+                tmp = new long[newSize];
+            }
+            if (vals != null && (tmpVals == null || tmpVals.length < tmp.length)) {
+                tmpVals = new int[tmp.length];
+            }
+        }
+
+        // sort arr, applying the same permutation to vals if it is non-null
+        void sort(long[] arr, int[] vals) {
+            if (vals != null && vals.length != arr.length) {
+                throw new IllegalArgumentException("payload length " + vals.length + " != " + arr.length);
+            }
+            this.arr = arr;
+            this.vals = vals;
+            stackSize = 0;
+            minGallop = MIN_GALLOP;
+            int n = arr.length;
+            int minRun = calculateMinRun(n);
+
+            int i = 0;
+            while (i < n) {
+                int runEnd = countRunAndMakeAscending(arr, vals, i, n - 1);
+                if (runEnd - i + 1 < minRun) {
+                    int forcedEnd = Math.min(i + minRun - 1, n - 1);
+                    binaryInsertionSort(arr, vals, i, forcedEnd, runEnd + 1);
+                    runEnd = forcedEnd;
+                }
+                pushRun(i, runEnd - i + 1);
+                i = runEnd + 1;
+                mergeCollapse();
+            }
+            while (stackSize > 1) {
+                mergeAt(stackSize - 2);
+            }
+            this.arr = null;
+            this.vals = null;
+        }
+
+        private void pushRun(int base, int len) {
+            if (stackSize == runBase.length) {
+                runBase = Arrays.copyOf(runBase, 2 * stackSize);
+                runLen = Arrays.copyOf(runLen, 2 * stackSize);
+            }
+            runBase[stackSize] = base;
+            runLen[stackSize] = len;
+            stackSize++;
+        }
+
+        // see mergeCollapse in the int[] sorter
+        private void mergeCollapse() {
+            while (stackSize > 1) {
+                int lenB = runLen[stackSize - 2];
+                int lenC = runLen[stackSize - 1];
+                if (stackSize > 2 && runLen[stackSize - 3] <= lenB + lenC
+                        || stackSize > 3 && runLen[stackSize - 4] <= runLen[stackSize - 3] + lenB) {
+                    if (runLen[stackSize - 3] < lenC) {
+                        mergeAt(stackSize - 3);
+                    } else {
+                        mergeAt(stackSize - 2);
+                    }
+                } else if (lenB <= lenC) {
+                    mergeAt(stackSize - 2);
+                } else {
+                    break;
+                }
+            }
+        }
+
+        private void mergeAt(int i) {
+            int base1 = runBase[i], len1 = runLen[i];
+            int base2 = runBase[i + 1], len2 = runLen[i + 1];
+            runLen[i] = len1 + len2;
+            if (i == stackSize - 3) {
+                runBase[i + 1] = runBase[i + 2];
+                runLen[i + 1] = runLen[i + 2];
+            }
+            stackSize--;
+
+            int k = gallopRight(arr[base2], arr, base1, len1, 0);
+            base1 += k;
+            len1 -= k;
+            if (len1 == 0) {
+                return;
+            }
+            len2 = gallopLeft(arr[base1 + len1 - 1], arr, base2, len2, len2 - 1);
+            if (len2 == 0) {
+                return;
+            }
+            if (len1 <= len2) {
+                mergeLo(base1, len1, base2, len2);
+            } else {
+                mergeHi(base1, len1, base2, len2);
+            }
+        }
+
+        // see mergeLo in the int[] sorter; every key move is mirrored in the payload
+        private void mergeLo(int base1, int len1, int base2, int len2) {
+            long[] a = arr;
+            int[] v = vals;
+            ensureCapacity(len1);
+            long[] t = tmp;
+            int[] tv = v != null ? tmpVals : null;
+            copy(a, v, base1, t, tv, 0, len1);
+            int cursor1 = 0, cursor2 = base2, dest = base1;
+
+            move(a, v, cursor2++, a, v, dest++);
+            if (--len2 == 0) {
+                copy(t, tv, cursor1, a, v, dest, len1);
+                return;
+            }
+            if (len1 == 1) {
+                copy(a, v, cursor2, a, v, dest, len2);
+                move(t, tv, cursor1, a, v, dest + len2);
+                return;
+            }
+
+            int minGallop = this.minGallop;
+            outer:
+            while (true) {
+                int count1 = 0, count2 = 0;
+                do {
+                    if (a[cursor2] < t[cursor1]) {
+                        move(a, v, cursor2++, a, v, dest++);
+                        count2++;
+                        count1 = 0;
+                        if (--len2 == 0) {
+                            break outer;
+                        }
+                    } else {
+                        move(t, tv, cursor1++, a, v, dest++);
+                        count1++;
+                        count2 = 0;
+                        if (--len1 == 1) {
+                            break outer;
+                        }
+                    }
+                } while ((count1 | count2) < minGallop);
+
+                do {
+                    count1 = gallopRight(a[cursor2], t, cursor1, len1, 0);
+                    if (count1 != 0) {
+                        copy(t, tv, cursor1, a, v, dest, count1);
+                        dest += count1;
+                        cursor1 += count1;
+                        len1 -= count1;
+                        if (len1 <= 1) {
+                            break outer;
+                        }
+                    }
+                    move(a, v, cursor2++, a, v, dest++);
+                    if (--len2 == 0) {
+                        break outer;
+                    }
+
+                    count2 = gallopLeft(t[cursor1], a, cursor2, len2, 0);
+                    if (count2 != 0) {
+                        copy(a, v, cursor2, a, v, dest, count2);
+                        dest += count2;
+                        cursor2 += count2;
+                        len2 -= count2;
+                        if (len2 == 0) {
+                            break outer;
+                        }
+                    }
+                    move(t, tv, cursor1++, a, v, dest++);
+                    if (--len1 == 1) {
+                        break outer;
+                    }
+                    minGallop--;
+                } while (count1 >= MIN_GALLOP | count2 >= MIN_GALLOP);
+                if (minGallop < 0) {
+                    minGallop = 0;
+                }
+                minGallop += 2;
+            }
+            this.minGallop = minGallop < 1 ? 1 : minGallop;
+
+            if (len1 == 1) {
+                copy(a, v, cursor2, a, v, dest, len2);
+                move(t, tv, cursor1, a, v, dest + len2);
+            } else {
+                copy(t, tv, cursor1, a, v, dest, len1);
+            }
+        }
+
+        // see mergeHi in the int[] sorter; every key move is mirrored in the payload
+        private void mergeHi(int base1, int len1, int base2, int len2) {
+            long[] a = arr;
+            int[] v = vals;
+            ensureCapacity(len2);
+            long[] t = tmp;
+            int[] tv = v != null ? tmpVals : null;
+            copy(a, v, base2, t, tv, 0, len2);
+            int cursor1 = base1 + len1 - 1, cursor2 = len2 - 1, dest = base2 + len2 - 1;
+
+            move(a, v, cursor1--, a, v, dest--);
+            if (--len1 == 0) {
+                copy(t, tv, 0, a, v, dest - (len2 - 1), len2);
+                return;
+            }
+            if (len2 == 1) {
+                dest -= len1;
+                cursor1 -= len1;
+                copy(a, v, cursor1 + 1, a, v, dest + 1, len1);
+                move(t, tv, cursor2, a, v, dest);
+                return;
+            }
+
+            int minGallop = this.minGallop;
+            outer:
+            while (true) {
+                int count1 = 0, count2 = 0;
+                do {
+                    if (t[cursor2] < a[cursor1]) {
+                        move(a, v, cursor1--, a, v, dest--);
+                        count1++;
+                        count2 = 0;
+                        if (--len1 == 0) {
+                            break outer;
+                        }
+                    } else {
+                        move(t, tv, cursor2--, a, v, dest--);
+                        count2++;
+                        count1 = 0;
+                        if (--len2 == 1) {
+                            break outer;
+                        }
+                    }
+                } while ((count1 | count2) < minGallop);
+
+                do {
+                    count1 = len1 - gallopRight(t[cursor2], a, base1, len1, len1 - 1);
+                    if (count1 != 0) {
+                        dest -= count1;
+                        cursor1 -= count1;
+                        len1 -= count1;
+                        copy(a, v, cursor1 + 1, a, v, dest + 1, count1);
+                        if (len1 == 0) {
+                            break outer;
+                        }
+                    }
+                    move(t, tv, cursor2--, a, v, dest--);
+                    if (--len2 == 1) {
+                        break outer;
+                    }
+
+                    count2 = len2 - gallopLeft(a[cursor1], t, 0, len2, len2 - 1);
+                    if (count2 != 0) {
+                        dest -= count2;
+                        cursor2 -= count2;
+                        len2 -= count2;
+                        copy(t, tv, cursor2 + 1, a, v, dest + 1, count2);
+                        if (len2 <= 1) {
+                            break outer;
+                        }
+                    }
+                    move(a, v, cursor1--, a, v, dest--);
+                    if (--len1 == 0) {
+                        break outer;
+                    }
+                    minGallop--;
+                } while (count1 >= MIN_GALLOP | count2 >= MIN_GALLOP);
+                if (minGallop < 0) {
+                    minGallop = 0;
+                }
+                minGallop += 2;
+            }
+            this.minGallop = minGallop < 1 ? 1 : minGallop;
+
+            if (len2 == 1) {
+                dest -= len1;
+                cursor1 -= len1;
+                copy(a, v, cursor1 + 1, a, v, dest + 1, len1);
+                move(t, tv, cursor2, a, v, dest);
+            } else {
+                copy(t, tv, 0, a, v, dest - (len2 - 1), len2);
+            }
+        }
+    }
+
+    // a sorted multiset of ints that is built up in batches
+    // it keeps a timsort run stack alive between calls: each batch is sorted on its own and pushed
+    // as one more run, and the usual merge policy decides which runs to merge, so old data is only
+    // ever merged, never re-sorted, and each element takes part in O(log n) merges over its life
+    // queries search every pending run; the policy keeps the run lengths growing geometrically
+    // down the stack, so there are only O(log n) runs to look at
+    public static final class SortedStore {
+        private final timSort runs = new timSort();          // the pending runs over data
+        private final timSort batchSorter = new timSort();
+        private int[] data = new int[16];
+        private int size = 0;
+
+        public int size() {
+            return size;
+        }
+
+        // add the elements of batch
+        public void append(int[] batch) {
+            int len = batch.length;
+            if (len == 0) {
+                return;
+            }
+            if (data.length - size < len) {
+                data = Arrays.copyOf(data, Math.max(2 * data.length, size + len));
+            }
+            System.arraycopy(batch, 0, data, size, len);
+            batchSorter.sort(data, size, size + len);
+            runs.arr = data;
+            int top = runs.stackSize - 1;
+            if (top >= 0 && data[size - 1] <= data[size]) {
+                // the batch carries on where the last run ends (e.g. data arriving in order):
+                // just make that run longer
+                runs.runLen[top] += len;
+            } else {
+                runs.pushRun(size, len);
+            }
+            size += len;
+            runs.mergeCollapse();
+            runs.arr = null;
+        }
+
+        // number of elements smaller than key
+        public int rank(int key) {
+            int r = 0;
+            for (int i = 0; i < runs.stackSize; i++) {
+                r += gallopLeft(key, data, runs.runBase[i], runs.runLen[i], 0);
+            }
+            return r;
+        }
+
+        // number of elements x with lo <= x < hi
+        public int count(int lo, int hi) {
+            return hi <= lo ? 0 : rank(hi) - rank(lo);
+        }
+
+        // the elements x with lo <= x < hi, in ascending order
+        public int[] range(int lo, int hi) {
+            if (hi <= lo) {
+                return new int[0];
+            }
+            int[] result = new int[count(lo, hi)];
+            // concatenate the matching slice of every run; each slice is already sorted, so
+            // timsort picks them up as natural runs and only has to merge them
+            int pos = 0;
+            for (int i = 0; i < runs.stackSize; i++) {
+                int base = runs.runBase[i], len = runs.runLen[i];
+                int from = gallopLeft(lo, data, base, len, 0);
+                int to = gallopLeft(hi, data, base, len, from == len ? len - 1 : from);
+                System.arraycopy(data, base + from, result, pos, to - from);
+                pos += to - from;
+            }
+            timsort(result);
+            return result;
+        }
+
+        // merge all pending runs and return a copy of the fully sorted contents
+        public int[] toArray() {
+            runs.arr = data;
+            while (runs.stackSize > 1) {
+                runs.mergeAt(runs.stackSize - 2);
+            }
+            runs.arr = null;
+            return Arrays.copyOf(data, size);
+        }
+    }
+
+    // external sort of a binary file of big-endian records, 4 bytes (int) or 8 bytes (long) each,
+    // for files too large to sort in memory; see ExternalSort
+    public static void externalSort(Path in, Path out, int recordBytes) throws IOException {
+        externalSort(in, out, recordBytes, ExternalSort.DEFAULT_CHUNK_RECORDS, null);
+    }
+
+    public static void externalSort(Path in, Path out, int recordBytes, int chunkRecords, Path tempDir) throws IOException {
+        if (recordBytes != 4 && recordBytes != 8) {
+            throw new IllegalArgumentException("recordBytes must be 4 or 8, got " + recordBytes);
+        }
+        if (chunkRecords < 1) {
+            throw new IllegalArgumentException("chunkRecords must be positive, got " + chunkRecords);
+        }
+        new ExternalSort(recordBytes, chunkRecords, tempDir).sort(in, out);
+    }
+
+    // external memory timsort
+    // pass 1 memory-maps the input one chunk at a time, timsorts the chunk (linear time when it is
+    // already ordered) and spills it as a sorted run; when a chunk starts at or above the end of
+    // the run before it, it is appended to that run instead, so runs longer than memory are kept
+    // whole and a sorted file comes out of pass 1 as a single run
+    // pass 2 k-way merges the runs through a loser tree; if there are more runs than MAX_FAN_IN,
+    // the shortest ones are merged first (like timsort, merging runs of similar size keeps the
+    // total work low), so every record is rewritten as few times as possible
+    static final class ExternalSort {
+        static final int DEFAULT_CHUNK_RECORDS = 1 << 23;
+        // most runs open at once in one merge
+        static final int MAX_FAN_IN = 64;
+        // bytes mapped at a time by each run reader, and the write buffer size
+        static final int WINDOW_BYTES = 1 << 20;
+
+        private final int width;
+        private final int chunkRecords;
+        private final Path tempDir;
+        private final List<Path> tempFiles = new ArrayList<>();
+
+        ExternalSort(int width, int chunkRecords, Path tempDir) {
+            this.width = width;
+            this.chunkRecords = chunkRecords;
+            this.tempDir = tempDir;
+        }
+
+        // a spilled run: a temp file holding count sorted records
+        private static final class Run {
+            final Path path;
+            long count;
+
+            Run(Path path, long count) {
+                this.path = path;
+                this.count = count;
+            }
+        }
+
+        void sort(Path in, Path out) throws IOException {
+            try {
+                List<Run> runs = spillRuns(in);
+                while (runs.size() > MAX_FAN_IN) {
+                    // merge the shortest runs into one and put it back with the others
+                    runs.sort((r1, r2) -> Long.compare(r1.count, r2.count));
+                    List<Run> group = new ArrayList<>(runs.subList(0, MAX_FAN_IN));
+                    runs.subList(0, MAX_FAN_IN).clear();
+                    Path merged = newTempFile();
+                    long count = merge(group, merged);
+                    for (Run r : group) {
+                        Files.delete(r.path);
+                    }
+                    runs.add(new Run(merged, count));
+                }
+                if (runs.size() == 1) {
+                    // a single run is already the answer: no merge pass needed
+                    Files.move(runs.get(0).path, out, StandardCopyOption.REPLACE_EXISTING);
+                } else {
+                    merge(runs, out);
+                }
+            } finally {
+                for (Path p : tempFiles) {
+                    Files.deleteIfExists(p);
+                }
+            }
+        }
+
+        private Path newTempFile() throws IOException {
+            Path p = tempDir == null ? Files.createTempFile("timsort-run", ".bin")
+                                     : Files.createTempFile(tempDir, "timsort-run", ".bin");
+            tempFiles.add(p);
+            return p;
+        }
+
+        // pass 1: cut the input into sorted runs on disk
+        private List<Run> spillRuns(Path in) throws IOException {
+            List<Run> runs = new ArrayList<>();
+            LongTimSort sorter = new LongTimSort();
+            try (FileChannel ch = FileChannel.open(in, StandardOpenOption.READ)) {
+                long size = ch.size();
+                if (size % width != 0) {
+                    throw new IOException(in + ": size " + size + " is not a multiple of " + width);
+                }
+                long records = size / width;
+                long[] chunk = new long[(int) Math.min(chunkRecords, Math.max(records, 1))];
+                RunWriter writer = null;
+                Run current = null;
+                long last = 0;
+                try {
+                    for (long pos = 0; pos < records; ) {
+                        int n = (int) Math.min(chunk.length, records - pos);
+                        // map just this chunk; each chunk is at most 2^31 - 1 records but may still
+                        // exceed one mapping, so map it in pieces
+                        for (int done = 0; done < n; ) {
+                            int piece = Math.min(n - done, Integer.MAX_VALUE / width);
+                            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, (pos + done) * width, (long) piece * width);
+                            for (int i = 0; i < piece; i++) {
+                                chunk[done + i] = width == 4 ? buf.getInt() : buf.getLong();
+                            }
+                            done += piece;
+                        }
+                        long[] keys = n == chunk.length ? chunk : Arrays.copyOf(chunk, n);
+                        sorter.sort(keys, null);
+                        if (current == null || keys[0] < last) {
+                            // the chunk does not continue the current run: start a new one
+                            if (writer != null) {
+                                writer.close();
+                            }
+                            current = new Run(newTempFile(), 0);
+                            runs.add(current);
+                            writer = new RunWriter(current.path, width);
+                        }
+                        for (int i = 0; i < n; i++) {
+                            writer.write(keys[i]);
+                        }
+                        current.count += n;
+                        last = keys[n - 1];
+                        pos += n;
+                    }
+                } finally {
+                    if (writer != null) {
+                        writer.close();
+                    }
+                }
+            }
+            if (runs.isEmpty()) {
+                runs.add(new Run(newTempFile(), 0));     // empty input, empty output
+            }
+            return runs;
+        }
+
+        // pass 2: k-way merge of the given runs into out, returning the number of records written
+        private long merge(List<Run> runs, Path out) throws IOException {
+            int k = runs.size();
+            RunReader[] readers = new RunReader[k];
+            long written = 0;
+            try (RunWriter writer = new RunWriter(out, width)) {
+                for (int i = 0; i < k; i++) {
+                    readers[i] = new RunReader(runs.get(i).path, width);
+                }
+                LoserTree tree = new LoserTree(readers);
+                while (!tree.isEmpty()) {
+                    writer.write(tree.pop());
+                    written++;
+                }
+            } finally {
+                for (RunReader r : readers) {
+                    if (r != null) {
+                        r.close();
+                    }
+                }
+            }
+            return written;
+        }
+    }
+
+    // tournament tree over k sorted readers: each internal node keeps the loser of the match played
+    // there and node 0 keeps the overall winner, so replacing the winner with the next record of
+    // its reader replays only one leaf-to-root path, about log2(k) comparisons per record
+    static final class LoserTree {
+        private final RunReader[] readers;
+        private final int k;
+        private final int[] tree;       // tree[0] is the winner, tree[1..k-1] are losers
+        private final long[] heads;     // the current record of each reader
+        private final boolean[] done;   // whether each reader is used up
+
+        LoserTree(RunReader[] readers) throws IOException {
+            this.readers = readers;
+            k = readers.length;
+            tree = new int[Math.max(k, 1)];
+            heads = new long[k];
+            done = new boolean[k];
+            for (int i = 0; i < k; i++) {
+                advance(i);
+            }
+            // leaves sit at positions k..2k-1 of an implicit complete binary tree
+            tree[0] = k == 0 ? 0 : build(1);
+        }
+
+        private void advance(int i) throws IOException {
+            if (readers[i].hasNext()) {
+                heads[i] = readers[i].next();
+            } else {
+                done[i] = true;
+            }
+        }
+
+        // does reader i's record come before reader j's? used-up readers lose every match
+        private boolean beats(int i, int j) {
+            if (done[i] || done[j]) {
+                return !done[i];
+            }
+            return heads[i] < heads[j] || (heads[i] == heads[j] && i < j);
+        }
+
+        // play the matches below node and return the winner, storing each loser
+        private int build(int node) {
+            if (node >= k) {
+                return node - k;
+            }
+            int left = build(2 * node), right = build(2 * node + 1);
+            if (beats(left, right)) {
+                tree[node] = right;
+                return left;
+            }
+            tree[node] = left;
+            return right;
+        }
+
+        boolean isEmpty() {
+            return k == 0 || done[tree[0]];
+        }
+
+        // remove and return the smallest record, then refill from the same reader
+        long pop() throws IOException {
+            int winner = tree[0];
+            long result = heads[winner];
+            advance(winner);
+            for (int node = (winner + k) >> 1; node > 0; node >>= 1) {
+                if (beats(tree[node], winner)) {
+                    int temp = tree[node];
+                    tree[node] = winner;
+                    winner = temp;
+                }
+            }
+            tree[0] = winner;
+            return result;
+        }
+    }
+
+    // buffered sequential reader over a run file
+    // it reads through one reused direct buffer, like RunWriter, rather than mapping a window at a
+    // time: nothing unmaps a mapping until GC finds it, and the merge loop allocates so little that
+    // the mappings would pile up to the vm.max_map_count limit on a large enough merge
+    static final class RunReader implements AutoCloseable {
+        private final FileChannel ch;
+        private final int width;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(ExternalSort.WINDOW_BYTES);
+        private boolean eof = false;
+
+        RunReader(Path path, int width) throws IOException {
+            ch = FileChannel.open(path, StandardOpenOption.READ);
+            this.width = width;
+            buf.flip();     // start out empty
+        }
+
+        boolean hasNext() throws IOException {
+            if (buf.remaining() >= width || eof) {
+                return buf.remaining() >= width;
+            }
+            // keep any partial record and refill the rest of the buffer
+            buf.compact();
+            while (buf.hasRemaining()) {
+                if (ch.read(buf) == -1) {
+                    eof = true;
+                    break;
+                }
+            }
+            buf.flip();
+            return buf.remaining() >= width;
+        }
+
+        long next() {
+            return width == 4 ? buf.getInt() : buf.getLong();
+        }
+
+        @Override
+        public void close() throws IOException {
+            ch.close();
+        }
+    }
+
+    // buffered writer of big-endian records
+    static final class RunWriter implements AutoCloseable {
+        private final FileChannel ch;
+        private final int width;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(ExternalSort.WINDOW_BYTES);
+
+        RunWriter(Path path, int width) throws IOException {
+            ch = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                                  StandardOpenOption.TRUNCATE_EXISTING);
+            this.width = width;
+        }
+
+        void write(long value) throws IOException {
+            if (buf.remaining() < width) {
+                flush();
+            }
+            if (width == 4) {
+                buf.putInt((int) value);
+            } else {
+                buf.putLong(value);
+            }
+        }
+
+        private void flush() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining()) {
+                ch.write(buf);
+            }
+            buf.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+            ch.close();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        // java timSort.java external <in> <out> [4|8]: sort a binary record file on disk
+        if (args.length >= 3 && args[0].equals("external")) {
+            int recordBytes = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+            externalSort(Path.of(args[1]), Path.of(args[2]), recordBytes);
+            return;
+        }
         // read in from stdin
         Scanner sc = new Scanner(System.in);
         int arrSize = sc.nextInt();
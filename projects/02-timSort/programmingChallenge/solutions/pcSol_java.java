@@ -12,53 +12,61 @@ public class pcSol_java {
         return n + r;
     }
 
-    // augmented to also detect for descending runs and reverse them in place 
-    static void insertionSort(List<Ship> arr, int left, int right, Comparator<Ship> key) {
+    // augmented to also detect for descending runs and reverse them in place
+    // perm holds ship indices and is ordered by keys[perm[i]]; keys are computed once per ship
+    // up front, so a comparison is just two array loads instead of a comparator call
+    static void insertionSort(int[] perm, int left, int right, long[] keys) {
         // check for descending run if the first two elements are out of order
-        if (left < right && key.compare(arr.get(left), arr.get(left + 1)) > 0) {
+        if (left < right && keys[perm[left]] > keys[perm[left + 1]]) {
             boolean isDesc = true;
             for (int k = left; k < right; k++) {
-                // found an increasing segment so run is not descending
-                if (key.compare(arr.get(k), arr.get(k + 1)) < 0) {
+                // found a non-decreasing pair so run is not strictly descending
+                // (reversing equal keys would break stability)
+                if (keys[perm[k]] <= keys[perm[k + 1]]) {
                     isDesc = false;
                     break;
                 }
             }
             if (isDesc) {
                 // reverse in-place
-                Collections.reverse(arr.subList(left, right + 1));
+                for (int lo = left, hi = right; lo < hi; lo++, hi--) {
+                    int temp = perm[lo];
+                    perm[lo] = perm[hi];
+                    perm[hi] = temp;
+                }
                 return; // sorted run
             }
         }
 
         // if run is not descending use standard insertionsort implementation
         for (int i = left + 1; i <= right; i++) {
-            Ship temp = arr.get(i);
+            int temp = perm[i];
+            long tempKey = keys[temp];
             int j = i - 1;
-            while (j >= left && key.compare(arr.get(j), temp) > 0) {
-                arr.set(j + 1, arr.get(j));
+            while (j >= left && keys[perm[j]] > tempKey) {
+                perm[j + 1] = perm[j];
                 j--;
             }
-            arr.set(j + 1, temp);
+            perm[j + 1] = temp;
         }
     }
 
-    // gallop method used to quickly find where x belongs in a sorted array
-    static int gallop(Ship x, List<Ship> arr, int start, Comparator<Ship> key) {
+    // gallop method used to quickly find where key x belongs in the sorted slice arr[start..n-1]:
+    // returns the first position whose key is >= x
+    static int gallop(long x, int[] arr, int start, int n, long[] keys) {
         int hi = 1;
-        int n = arr.size();
         // exponential search: multilpy hi by 2 until its idx is >= x
         // the current element in the "winning" or greater list or the end of the list is reached
-        while (start + hi < n && key.compare(x, arr.get(start + hi)) > 0) {
+        while (start + hi < n && x > keys[arr[start + hi]]) {
             hi *= 2;
         }
         // binary search between the second to last element checked and the element selected to pinpoint
         // where x belongs
-        int lo = hi / 2;
+        int lo = start + hi / 2;
         hi = Math.min(start + hi, n);
         while (lo < hi) {
-            int mid = (lo + hi) / 2;
-            if (key.compare(x, arr.get(mid)) > 0) {
+            int mid = (lo + hi) >>> 1;
+            if (x > keys[arr[mid]]) {
                 lo = mid + 1;
             } else {
                 hi = mid;
@@ -69,22 +77,23 @@ public class pcSol_java {
 
     // combine two sorted subarrays [left,mid] and [mid+1,right]
     // track consecutive wins to trigger galloping mode to reduce the number of individual comparisons
-    static void merge(List<Ship> arr, int left, int mid, int right, Comparator<Ship> key) {
-        List<Ship> leftPart = new ArrayList<>(arr.subList(left, mid + 1));
-        List<Ship> rightPart = new ArrayList<>(arr.subList(mid + 1, right + 1));
+    static void merge(int[] perm, int left, int mid, int right, long[] keys) {
+        int[] leftPart = Arrays.copyOfRange(perm, left, mid + 1);
+        int[] rightPart = Arrays.copyOfRange(perm, mid + 1, right + 1);
+        int nLeft = leftPart.length, nRight = rightPart.length;
 
         int i = 0, j = 0, k = left;
         int minGallop = 7;
         int countLeft = 0, countRight = 0;
 
         // core merge logic
-        while (i < leftPart.size() && j < rightPart.size()) {
-            if (key.compare(leftPart.get(i), rightPart.get(j)) <= 0) {
-                arr.set(k++, leftPart.get(i++));
+        while (i < nLeft && j < nRight) {
+            if (keys[leftPart[i]] <= keys[rightPart[j]]) {
+                perm[k++] = leftPart[i++];
                 countLeft++;    // keeping track of left subarray "wins"
                 countRight = 0;
             } else {
-                arr.set(k++, rightPart.get(j++));
+                perm[k++] = rightPart[j++];
                 countRight++;   // keeping track of right subarray "wins"
                 countLeft = 0;
             }
@@ -92,26 +101,27 @@ public class pcSol_java {
             // one side wins individual comparisons more than min_gallop times
             // if left run is smaller call gallop to find the index of the right one where x fits
             if (countLeft >= minGallop) {
-                int pos = gallop(rightPart.get(j), leftPart, i, key);
+                int pos = gallop(keys[rightPart[j]], leftPart, i, nLeft, keys);
                 // copy the part of array that was skipped over
-                while (i < pos) arr.set(k++, leftPart.get(i++));
+                while (i < pos) perm[k++] = leftPart[i++];
                 countLeft = 0;  // reset counter
             // if right run is smaller call gallop to find the index of the left one where x fits
             } else if (countRight >= minGallop) {
-                int pos = gallop(leftPart.get(i), rightPart, j, key);
-                while (j < pos) arr.set(k++, rightPart.get(j++));
+                int pos = gallop(keys[leftPart[i]], rightPart, j, nRight, keys);
+                while (j < pos) perm[k++] = rightPart[j++];
                 countRight = 0;  // reset counter
             }
         }
 
         // copy over any leftover elements, only 1 will run, the other is already done
-        while (i < leftPart.size()) arr.set(k++, leftPart.get(i++));
-        while (j < rightPart.size()) arr.set(k++, rightPart.get(j++));
+        while (i < nLeft) perm[k++] = leftPart[i++];
+        while (j < nRight) perm[k++] = rightPart[j++];
     }
 
     // core timsort logic: split the array into runs, sort each, then merge according to policy
-    static void timsort(List<Ship> arr, Comparator<Ship> key) {
-        int n = arr.size();
+    // stably reorders perm by ascending keys[perm[i]]
+    static void timsort(int[] perm, long[] keys) {
+        int n = perm.length;
         int minRun = calculateMinRun(n);
         List<int[]> runStack = new ArrayList<>();
 
@@ -120,19 +130,19 @@ public class pcSol_java {
         while (i < n) {
             // end of current run is either i + minRun (offset) or the end of the list
             int runEnd = Math.min(i + minRun - 1, n - 1);
-            insertionSort(arr, i, runEnd, key);
+            insertionSort(perm, i, runEnd, keys);
             runStack.add(new int[]{i, runEnd}); // push the run to the stack
             i = runEnd + 1;     // update offset
-            mergeCollapse(arr, runStack, key);
+            mergeCollapse(perm, runStack, keys);
         }
         // merge the runs on the stack according to the merge policy until there is 1 run on the stack
         while (runStack.size() > 1) {
-            mergeAt(arr, runStack, runStack.size() - 2, key);
+            mergeAt(perm, runStack, runStack.size() - 2, keys);
         }
     }
 
     // enforces timsort's merge policy
-    static void mergeCollapse(List<Ship> arr, List<int[]> runStack, Comparator<Ship> key) {
+    static void mergeCollapse(int[] perm, List<int[]> runStack, long[] keys) {
         while (runStack.size() > 2) {
             // get the length of the first three runs on the stack
             // C is at the top of the stack, A is closest to the bottom
@@ -148,9 +158,9 @@ public class pcSol_java {
             // B should be larger than C
             if (lenA <= lenB + lenC || lenB <= lenC) {
                 if (lenA < lenC) {
-                    mergeAt(arr, runStack, runStack.size() - 3, key);
+                    mergeAt(perm, runStack, runStack.size() - 3, keys);
                 } else {
-                    mergeAt(arr, runStack, runStack.size() - 2, key);
+                    mergeAt(perm, runStack, runStack.size() - 2, keys);
                 }
             } else {
                 // merge policy holds, no merges necessary
@@ -163,40 +173,34 @@ public class pcSol_java {
             int[] A = runStack.get(0);
             int[] B = runStack.get(1);
             if (A[1] - A[0] + 1 <= B[1] - B[0] + 1) {
-                mergeAt(arr, runStack, 0, key);
+                mergeAt(perm, runStack, 0, keys);
             }
         }
     }
 
     // merge runs at a location on the stack
-    static void mergeAt(List<Ship> arr, List<int[]> runStack, int i, Comparator<Ship> key) {
+    static void mergeAt(int[] perm, List<int[]> runStack, int i, long[] keys) {
         // copy subsections
         int[] run1 = runStack.get(i);
         int[] run2 = runStack.get(i + 1);
-        merge(arr, run1[0], run1[1], run2[1], key);
+        merge(perm, run1[0], run1[1], run2[1], keys);
         // update stack
         run1[1] = run2[1];
         runStack.remove(i + 1);
     }
 
-    // polar angle comparator for "twist"
-    static Comparator<Ship> polarAngleComparator = (a, b) -> {
-        // Check Above/Below Lighthouse
-        boolean ha = a.y > 0 || (a.y == 0 && a.x >= 0);
-        boolean hb = b.y > 0 || (b.y == 0 && b.x >= 0);
-
-        if (ha != hb) return ha ? -1 : 1;
-
-        // Cross product for angle
-        long cross = (long) a.x * b.y - (long) a.y * b.x;
-        if (cross != 0) return cross > 0 ? -1 : 1;
-
-        // Sort by radius
-        if (a.r != b.r) return Double.compare(a.r, b.r);
-
-        // Sort by order of appearance (index)
-        return Integer.compare(a.index, b.index);
-    };
+    // polar angle sort key for "twist": counterclockwise from the positive x axis
+    // each quadrant maps onto [q, q+1) by a ratio that is monotone in the angle, e.g. y/(x+y) in the
+    // first, so no trig is needed; ratios of distinct angles differ by at least 1/(|x1|+|y1|)(|x2|+|y2|),
+    // far above double rounding for these coordinates, so equal angles get equal keys and the order
+    // matches the cross product comparison exactly. the lighthouse itself (0, 0) gets angle 0
+    static double polarAngle(int x, int y) {
+        if (x == 0 && y == 0) return 0;
+        if (x > 0 && y >= 0) return (double) y / (x + y);
+        if (x <= 0 && y > 0) return 1 + (double) -x / (-x + y);
+        if (x < 0) return 2 + (double) -y / (-x - y);
+        return 3 + (double) x / (x - y);
+    }
 
     //Ship class
     static class Ship {
@@ -220,21 +224,34 @@ public class pcSol_java {
         int numShips = sc.nextInt();
         int numQueries = sc.nextInt();
 
-        Map<Ship, String> shipMap = new HashMap<>();
-        List<Ship> shipsSorted = new ArrayList<>();
+        Ship[] ships = new Ship[numShips];
 
         //place ships on grid
         for (int i = 0; i < numShips; i++) {
             int x = sc.nextInt();
             int y = sc.nextInt();
             String name = sc.next();
-            Ship s = new Ship(x, y, name, i);
-            shipsSorted.add(s);
-            shipMap.put(s, name);
+            ships[i] = new Ship(x, y, name, i);
         }
 
-        //sort ships
-        timsort(shipsSorted, polarAngleComparator);
+        //sort ships: angle first, then radius, then order of appearance
+        //the keys are computed once per ship; timsort is stable, so sorting by the least significant
+        //key first and the angle last leaves ties in radius order and then in input order
+        //(the angles are non-negative doubles, whose bit patterns order the same way as the values)
+        int[] perm = new int[numShips];
+        long[] radiusKeys = new long[numShips];
+        long[] angleKeys = new long[numShips];
+        for (int i = 0; i < numShips; i++) {
+            perm[i] = i;
+            radiusKeys[i] = (long) ships[i].x * ships[i].x + (long) ships[i].y * ships[i].y;
+            angleKeys[i] = Double.doubleToLongBits(polarAngle(ships[i].x, ships[i].y));
+        }
+        timsort(perm, radiusKeys);
+        timsort(perm, angleKeys);
+        List<Ship> shipsSorted = new ArrayList<>(numShips);
+        for (int i : perm) {
+            shipsSorted.add(ships[i]);
+        }
 
         //add queried ships to array list queried as the solution
         for (int i = 0; i < numQueries; i++) {
@@ -1,64 +1,461 @@
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongConsumer;
+import java.util.stream.IntStream;
 
 public class rabinKarp {
+    // hashes are taken modulo the Mersenne prime 2^61 - 1: reduction is a few shifts and adds, and
+    // two different windows collide with probability about m / 2^61 for a random base, so
+    // verifying a hit almost never finds a spurious one
+    static final long MOD = (1L << 61) - 1;
+    // a random base per run, so no fixed input can be built to collide on purpose
+    static final long BASE = ThreadLocalRandom.current().nextLong(1 << 16, MOD - 1);
+
     public static List<Integer> rabin_karp(String text, String pattern) {
         List<Integer> indices = new ArrayList<>();
-        int base = 26;
-        int q = 1000000007;
-        long target_hash = 0, curr_hash = 0;
-        int l = 0;
+        for (int index : search(text, pattern)) {
+            indices.add(index);
+        }
+        return indices;
+    }
 
-        // Compute the hash of the pattern
-        for (int i = 0; i < pattern.length(); i++) {
-            // Go in reverse of pattern to represent leftmost character as highest order
-            target_hash = (target_hash * base + (pattern.charAt(i) + 1)) % q;
+    // a * b mod 2^61 - 1 for a, b < 2^61
+    // the 122-bit product is hi * 2^64 + lo; since 2^61 = 1 (mod 2^61 - 1), it folds down to the
+    // low 61 bits plus everything above them
+    static long mulMod(long a, long b) {
+        long hi = Math.multiplyHigh(a, b);
+        long lo = a * b;
+        return reduce((lo & MOD) + (lo >>> 61) + (hi << 3));
+    }
+
+    // x mod 2^61 - 1 for 0 <= x < 2^63
+    static long reduce(long x) {
+        x = (x & MOD) + (x >>> 61);
+        return x >= MOD ? x - MOD : x;
+    }
+
+    // BASE^e mod 2^61 - 1
+    static long power(int e) {
+        long result = 1, b = BASE;
+        while (e > 0) {
+            if ((e & 1) == 1) {
+                result = mulMod(result, b);
+            }
+            e >>= 1;
+            b = mulMod(b, b);
         }
+        return result;
+    }
+
+    // all three versions below run the same loop:
+    // the window hash is sum of (c + 1) * BASE^(m-1-k) over its characters, the leftmost character
+    // as the highest order term (c + 1 so that a zero char still counts); to slide the window
+    // the outgoing character's term is subtracted using BASE^(m-1), computed once up front,
+    // and then the hash is shifted up one place and the incoming character added
+    // a hash hit is verified against the text in place before it is reported
 
-        // Sliding window template
-        for (int r = 0; r < text.length(); r++) {
-            // Left shift hash to make room for new character in base 26, then add new character's unicode normalized by 'a'
-            curr_hash = (curr_hash * base + (text.charAt(r) + 1)) % q;
+    // starting indices of every occurrence of pattern in text, in increasing order
+    public static int[] search(CharSequence text, CharSequence pattern) {
+        int n = text.length(), m = pattern.length();
+        if (m == 0 || m > n) {
+            return new int[0];
+        }
+        return search(text, pattern, 0, n - m + 1);
+    }
 
-            // Update hash value with rolling hash technique when window becomes oversized
-            if (r - l + 1 > pattern.length()) {
-                // Remove leftmost highest order character at position l
-                curr_hash = (curr_hash - (text.charAt(l) + 1) * modPow(base, pattern.length(), q)) % q;
-                l += 1;
+    // the occurrences that start in [from, to); reads text[from..to+m-2] only
+    private static int[] search(CharSequence text, CharSequence pattern, int from, int to) {
+        int m = pattern.length();
+        long high = power(m - 1);
+        long target = 0, hash = 0;
+        for (int i = 0; i < m; i++) {
+            target = reduce(mulMod(target, BASE) + pattern.charAt(i) + 1);
+            hash = reduce(mulMod(hash, BASE) + text.charAt(from + i) + 1);
+        }
+        boolean strings = text instanceof String && pattern instanceof String;
+        int[] found = new int[16];
+        int count = 0;
+        for (int l = from; ; l++) {
+            if (hash == target && (strings ? ((String) text).regionMatches(l, (String) pattern, 0, m)
+                                           : regionMatches(text, l, pattern, m))) {
+                if (count == found.length) {
+                    found = Arrays.copyOf(found, 2 * count);
+                }
+                found[count++] = l;
+            }
+            if (l + 1 == to) {
+                break;
             }
+            // drop text[l] (adding MOD - x subtracts x without going negative), take in text[l+m]
+            hash = reduce(hash + MOD - mulMod(text.charAt(l) + 1, high));
+            hash = reduce(mulMod(hash, BASE) + text.charAt(l + m) + 1);
+        }
+        return Arrays.copyOf(found, count);
+    }
+
+    // texts with fewer window positions than this are searched sequentially
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    // the same result as search(text, pattern), using every core
+    // the window start positions are cut into a few contiguous segments per core and each segment is
+    // searched independently with its own rolling hash, reading up to m - 1 characters past its
+    // end so that windows starting near the cut are seen whole; since every start position
+    // belongs to exactly one segment, concatenating the segments' sorted results in order gives
+    // the sequential answer with no duplicates to remove
+    public static int[] parallelSearch(CharSequence text, CharSequence pattern) {
+        int n = text.length(), m = pattern.length();
+        if (m == 0 || m > n) {
+            return new int[0];
+        }
+        int starts = n - m + 1;
+        int workers = ForkJoinPool.getCommonPoolParallelism();
+        if (starts < PARALLEL_THRESHOLD || workers <= 1) {
+            return search(text, pattern, 0, starts);
+        }
+        int segments = 4 * workers;
+        int[][] parts = IntStream.range(0, segments).parallel()
+                .mapToObj(i -> search(text, pattern, (int) ((long) starts * i / segments),
+                                                     (int) ((long) starts * (i + 1) / segments)))
+                .toArray(int[][]::new);
+        int total = 0;
+        for (int[] part : parts) {
+            total += part.length;
+        }
+        int[] found = new int[total];
+        int pos = 0;
+        for (int[] part : parts) {
+            System.arraycopy(part, 0, found, pos, part.length);
+            pos += part.length;
+        }
+        return found;
+    }
 
-            // Check if the current window matches the pattern
-            if (r - l + 1 == pattern.length() && curr_hash == target_hash) {
-                if (text.substring(l, r + 1).equals(pattern)) {      // Manual check to avoid false positives and spurious hits
-                    indices.add(l);
+    public static int[] search(char[] text, char[] pattern) {
+        int n = text.length, m = pattern.length;
+        if (m == 0 || m > n) {
+            return new int[0];
+        }
+        long high = power(m - 1);
+        long target = 0, hash = 0;
+        for (int i = 0; i < m; i++) {
+            target = reduce(mulMod(target, BASE) + pattern[i] + 1);
+            hash = reduce(mulMod(hash, BASE) + text[i] + 1);
+        }
+        int[] found = new int[16];
+        int count = 0;
+        for (int l = 0; ; l++) {
+            if (hash == target && Arrays.equals(text, l, l + m, pattern, 0, m)) {
+                if (count == found.length) {
+                    found = Arrays.copyOf(found, 2 * count);
                 }
+                found[count++] = l;
             }
+            if (l + m == n) {
+                break;
+            }
+            hash = reduce(hash + MOD - mulMod(text[l] + 1, high));
+            hash = reduce(mulMod(hash, BASE) + text[l + m] + 1);
         }
+        return Arrays.copyOf(found, count);
+    }
 
-        // Final list of starting indices where the pattern is found in the text
-        return indices;
+    // bytes are treated as unsigned, 0..255
+    public static int[] search(byte[] text, byte[] pattern) {
+        int n = text.length, m = pattern.length;
+        if (m == 0 || m > n) {
+            return new int[0];
+        }
+        long high = power(m - 1);
+        long target = 0, hash = 0;
+        for (int i = 0; i < m; i++) {
+            target = reduce(mulMod(target, BASE) + (pattern[i] & 0xff) + 1);
+            hash = reduce(mulMod(hash, BASE) + (text[i] & 0xff) + 1);
+        }
+        int[] found = new int[16];
+        int count = 0;
+        for (int l = 0; ; l++) {
+            if (hash == target && Arrays.equals(text, l, l + m, pattern, 0, m)) {
+                if (count == found.length) {
+                    found = Arrays.copyOf(found, 2 * count);
+                }
+                found[count++] = l;
+            }
+            if (l + m == n) {
+                break;
+            }
+            hash = reduce(hash + MOD - mulMod((text[l] & 0xff) + 1, high));
+            hash = reduce(mulMod(hash, BASE) + (text[l + m] & 0xff) + 1);
+        }
+        return Arrays.copyOf(found, count);
     }
 
-    // Helper method for modular exponentiation (equivalent to Python's pow(base, exponent, modulus))
-    private static long modPow(long base, long exponent, long modulus) {
-        if (modulus == 1) return 0;
-        
-        long result = 1;
-        base = base % modulus;
-        while (exponent > 0) {
-            if (exponent % 2 == 1) {
-                result = (result * base) % modulus;
+    // (patternId, offset) pairs reported by searchAll, kept in two parallel int arrays
+    // clear() keeps the arrays, so a buffer reused across searches stops allocating once it has
+    // grown to the largest result
+    public static final class MatchBuffer {
+        private int[] ids = new int[64];
+        private int[] offsets = new int[64];
+        private int size = 0;
+
+        public int size() {
+            return size;
+        }
+
+        public int patternId(int i) {
+            return ids[i];
+        }
+
+        public int offset(int i) {
+            return offsets[i];
+        }
+
+        public void clear() {
+            size = 0;
+        }
+
+        void add(int id, int offset) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, 2 * size);
+                offsets = Arrays.copyOf(offsets, 2 * size);
             }
-            exponent = exponent >> 1;
-            base = (base * base) % modulus;
+            ids[size] = id;
+            offsets[size] = offset;
+            size++;
         }
-        return result;
+    }
+
+    // open-addressed hash table from a window hash to the patterns that have that hash
+    // each slot holds one hash and the first pattern id with it; patterns with the same hash
+    // (duplicates, or real collisions) are chained through next[], indexed by pattern id
+    static final class PatternTable {
+        private final long[] keys;
+        private final int[] heads;      // -1 marks an empty slot
+        private final int mask;
+        private final int[] next;
+
+        PatternTable(int capacity, int[] next) {
+            // at most half full, so probe sequences stay short
+            int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1;
+            keys = new long[size];
+            heads = new int[size];
+            Arrays.fill(heads, -1);
+            mask = size - 1;
+            this.next = next;
+        }
+
+        private int slot(long hash) {
+            // the hashes are already uniform below 2^61; the multiply spreads them into the low bits
+            int i = (int) ((hash * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+            while (heads[i] != -1 && keys[i] != hash) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        void add(long hash, int id) {
+            int i = slot(hash);
+            keys[i] = hash;
+            next[id] = heads[i];
+            heads[i] = id;
+        }
+
+        // first pattern id with this hash, or -1; the others follow through next[]
+        int first(long hash) {
+            return heads[slot(hash)];
+        }
+    }
+
+    // find every occurrence of every pattern in text, appending (patternId, offset) pairs to out,
+    // where patternId is the index into patterns
+    // patterns are grouped by length and each group is found with one rolling-hash pass that looks
+    // every window up in the group's table, so the cost is one pass per distinct pattern length,
+    // however many patterns share it; pairs come out grouped by length, by offset within a group
+    public static void searchAll(CharSequence text, CharSequence[] patterns, MatchBuffer out) {
+        int n = text.length();
+        // bucket the usable pattern ids by length
+        Map<Integer, List<Integer>> byLength = new TreeMap<>();
+        for (int id = 0; id < patterns.length; id++) {
+            int m = patterns[id].length();
+            if (m > 0 && m <= n) {
+                byLength.computeIfAbsent(m, k -> new ArrayList<>()).add(id);
+            }
+        }
+        int[] next = new int[patterns.length];
+        for (Map.Entry<Integer, List<Integer>> group : byLength.entrySet()) {
+            int m = group.getKey();
+            List<Integer> ids = group.getValue();
+            PatternTable table = new PatternTable(ids.size(), next);
+            for (int id : ids) {
+                CharSequence pattern = patterns[id];
+                long hash = 0;
+                for (int i = 0; i < m; i++) {
+                    hash = reduce(mulMod(hash, BASE) + pattern.charAt(i) + 1);
+                }
+                table.add(hash, id);
+            }
+            scan(text, patterns, m, table, out);
+        }
+    }
+
+    // one rolling pass over text with window length m, reporting the patterns of table that match
+    private static void scan(CharSequence text, CharSequence[] patterns, int m, PatternTable table, MatchBuffer out) {
+        int n = text.length();
+        long high = power(m - 1);
+        long hash = 0;
+        for (int i = 0; i < m; i++) {
+            hash = reduce(mulMod(hash, BASE) + text.charAt(i) + 1);
+        }
+        boolean string = text instanceof String;
+        for (int l = 0; ; l++) {
+            for (int id = table.first(hash); id != -1; id = table.next[id]) {
+                CharSequence pattern = patterns[id];
+                if (string && pattern instanceof String ? ((String) text).regionMatches(l, (String) pattern, 0, m)
+                                                        : regionMatches(text, l, pattern, m)) {
+                    out.add(id, l);
+                }
+            }
+            if (l + m == n) {
+                break;
+            }
+            hash = reduce(hash + MOD - mulMod(text.charAt(l) + 1, high));
+            hash = reduce(mulMod(hash, BASE) + text.charAt(l + m) + 1);
+        }
+    }
+
+    // default read size for the streaming searches
+    static final int CHUNK_BYTES = 1 << 20;
+
+    // streaming search for a byte pattern: input arrives in arbitrary pieces through feed() and every
+    // match is reported by its absolute offset in the whole stream
+    // the last m bytes are kept in a ring buffer, which is all the state the rolling hash needs
+    // (the outgoing byte) and all that verifying a hit needs, so matches straddling the pieces are
+    // found like any other and memory is O(m) whatever the stream length
+    public static final class StreamMatcher {
+        private final byte[] pattern;
+        private final int m;
+        private final long high;
+        private final long target;
+        private final byte[] ring;      // the last m bytes; ring[pos] is the oldest once it is full
+        private int pos = 0;
+        private long hash = 0;
+        private long consumed = 0;      // bytes fed so far
+        private final LongConsumer onMatch;
+
+        public StreamMatcher(byte[] pattern, LongConsumer onMatch) {
+            if (pattern.length == 0) {
+                throw new IllegalArgumentException("empty pattern");
+            }
+            this.pattern = pattern.clone();
+            m = pattern.length;
+            high = power(m - 1);
+            long t = 0;
+            for (byte b : pattern) {
+                t = reduce(mulMod(t, BASE) + (b & 0xff) + 1);
+            }
+            target = t;
+            ring = new byte[m];
+            this.onMatch = onMatch;
+        }
+
+        public long consumed() {
+            return consumed;
+        }
+
+        public void feed(byte[] buf, int off, int len) {
+            long hash = this.hash;
+            int pos = this.pos;
+            long consumed = this.consumed;
+            for (int end = off + len; off < end; off++) {
+                int c = buf[off] & 0xff;
+                if (consumed >= m) {
+                    // the window is full: drop its oldest byte, which is about to be overwritten
+                    hash = reduce(hash + MOD - mulMod((ring[pos] & 0xff) + 1, high));
+                }
+                hash = reduce(mulMod(hash, BASE) + c + 1);
+                ring[pos] = (byte) c;
+                pos = pos + 1 == m ? 0 : pos + 1;
+                consumed++;
+                if (consumed >= m && hash == target && ringMatches(pos)) {
+                    onMatch.accept(consumed - m);
+                }
+            }
+            this.hash = hash;
+            this.pos = pos;
+            this.consumed = consumed;
+        }
+
+        // the window runs from ring[oldest] to the end of the ring and then wraps to the start
+        private boolean ringMatches(int oldest) {
+            int tail = m - oldest;
+            return Arrays.equals(ring, oldest, m, pattern, 0, tail)
+                    && Arrays.equals(ring, 0, oldest, pattern, tail, m);
+        }
+    }
+
+    // report every occurrence of pattern in the file, reading it through a FileChannel one
+    // chunk at a time; returns the number of matches
+    public static long searchFile(Path file, byte[] pattern, LongConsumer onMatch) throws IOException {
+        return searchFile(file, pattern, CHUNK_BYTES, onMatch);
+    }
+
+    public static long searchFile(Path file, byte[] pattern, int chunkBytes, LongConsumer onMatch) throws IOException {
+        long[] count = new long[1];
+        StreamMatcher matcher = new StreamMatcher(pattern, offset -> {
+            count[0]++;
+            onMatch.accept(offset);
+        });
+        ByteBuffer buf = ByteBuffer.allocate(chunkBytes);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (ch.read(buf) != -1) {
+                matcher.feed(buf.array(), 0, buf.position());
+                buf.clear();
+            }
+        }
+        return count[0];
+    }
+
+    // the same over any InputStream
+    public static long search(InputStream in, byte[] pattern, LongConsumer onMatch) throws IOException {
+        long[] count = new long[1];
+        StreamMatcher matcher = new StreamMatcher(pattern, offset -> {
+            count[0]++;
+            onMatch.accept(offset);
+        });
+        byte[] buf = new byte[CHUNK_BYTES];
+        int read;
+        while ((read = in.read(buf)) != -1) {
+            matcher.feed(buf, 0, read);
+        }
+        return count[0];
+    }
+
+    // text[from..from+m-1] equals pattern, for CharSequences that are not Strings
+    private static boolean regionMatches(CharSequence text, int from, CharSequence pattern, int m) {
+        for (int i = 0; i < m; i++) {
+            if (text.charAt(from + i) != pattern.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     public static void main(String[] args) throws IOException {
         if (args.length < 1) {
             System.out.println("Usage: java RabinKarp <input_file_path>");
+            System.out.println("       java RabinKarp stream <pattern> <file>");
+            return;
+        }
+        // stream mode: print the byte offset of every occurrence of the pattern in a file of any size
+        if (args[0].equals("stream") && args.length == 3) {
+            PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+            searchFile(Paths.get(args[2]), args[1].getBytes(StandardCharsets.UTF_8), out::println);
+            out.flush();
             return;
         }
 
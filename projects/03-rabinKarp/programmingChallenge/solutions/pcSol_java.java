@@ -1,63 +1,148 @@
 import java.io.*;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class pcSol_java {
-    public static int countPalindromicSubstrings(String s) {
-        // Reverse the string for comparison later
-        String r = new StringBuilder(s).reverse().toString();
-
-        int base = 26;
-        int q = (int)1e9 + 7;
-        int ans = 0;
-
-        // Iterate over all possible starting indices of substrings
-        for (int i = 0; i < s.length(); i++) {
-            // Initialize hash values for original and reversed substrings
-            long originalHash = 0;
-            long reversedHash = 0;
-
-            // Iterate over all possible ending indices of substrings
-            for (int j = i; j < s.length(); j++) {
-                // Convert current character to a number based on unicode normalized by 'a'
-                int currentCharValue = s.charAt(j) + 1;
-
-                // Update rolling hash for original string, we are adding a character to the end so left shift and make space for lower order bit to be added
-                originalHash = (originalHash * base + currentCharValue) % q;
-
-                // Compute position of corresponding character in the reversed string
-                int reverseCharIndex = r.length() - j - 1;
-                int reverseCharValue = r.charAt(reverseCharIndex) + 1;
-
-                // For reversed hash the new character added is at the beginning, so we need to set/add higher order bit to hash
-                reversedHash = (reversedHash + reverseCharValue * modPow(base, j - i, q)) % q;
-
-                // If hashes match, we might have a palindrome.
-                if (originalHash == reversedHash) {
-                    // Confirm it is actually a palindrome by manually checking, avoid false positives and spurious hits
-                    if (s.substring(i, j + 1).equals(new StringBuilder(s.substring(i, j + 1)).reverse().toString())) {
-                        ans++;
-                    }
-                }
+    // number of palindromic substrings of s, counted by position (equal substrings at different
+    // places count separately)
+    public static long countPalindromicSubstrings(String s) {
+        return analyze(s).total;
+    }
+
+    // everything analyze finds out about the palindromes in a string
+    static final class PalindromeStats {
+        long total;             // palindromic substrings, counted by position
+        int distinct;           // distinct palindromic strings, by hash: see analyze
+        int longestStart;       // the first longest palindrome is s[longestStart, longestStart + longestLength)
+        int longestLength;
+    }
+
+    // hashes of substrings are taken modulo the Mersenne prime 2^61 - 1 with a random base
+    static final long MOD = (1L << 61) - 1;
+    static final long BASE = ThreadLocalRandom.current().nextLong(1 << 16, MOD - 1);
+
+    static long mulMod(long a, long b) {
+        long hi = Math.multiplyHigh(a, b);
+        long lo = a * b;
+        return reduce((lo & MOD) + (lo >>> 61) + (hi << 3));
+    }
+
+    static long reduce(long x) {
+        x = (x & MOD) + (x >>> 61);
+        return x >= MOD ? x - MOD : x;
+    }
+
+    // O(n) palindrome analytics
+    // odd[i] is the number of odd palindromes centred on i (the longest has length 2*odd[i] - 1) and
+    // even[i] the number of even ones whose right half starts at i; both come from the usual radius
+    // scan, which reuses the radius at the mirrored centre inside the rightmost palindrome so far
+    // and only compares characters beyond it, O(n) comparisons in all
+    // every palindrome is either one found by such a comparison or the mirror image of an earlier
+    // one inside the rightmost palindrome, i.e. the same string, so hashing just the newly found
+    // ones (O(n) of them, via a prefix hash array) is enough to count the distinct strings
+    // unlike total and longest, distinct is probabilistic: hashes are not confirmed against the
+    // characters, so a collision would undercount by one; with at most 2n hashes below 2^61 that
+    // happens with probability about (2n)^2 / 2^62, under 10^-6 for n = 10^6 (confirming each
+    // repeated hash by comparing against a stored occurrence is exact but quadratic on strings
+    // such as Fibonacci words, where long palindromes are found again and again)
+    static PalindromeStats analyze(String str) {
+        char[] s = str.toCharArray();
+        int n = s.length;
+        PalindromeStats stats = new PalindromeStats();
+
+        // prefix[i] hashes s[0, i); the hash of s[l, r) is prefix[r] - prefix[l] * BASE^(r - l)
+        long[] prefix = new long[n + 1];
+        long[] pow = new long[n + 1];
+        pow[0] = 1;
+        for (int i = 0; i < n; i++) {
+            prefix[i + 1] = reduce(mulMod(prefix[i], BASE) + s[i] + 1);
+            pow[i + 1] = mulMod(pow[i], BASE);
+        }
+        LongSet seen = new LongSet(n);
+
+        int[] odd = new int[n];
+        for (int i = 0, l = 0, r = -1; i < n; i++) {
+            int k;
+            if (i > r) {
+                k = 1;
+                seen.add(substringHash(prefix, pow, i, i + 1));     // the single character
+            } else {
+                k = Math.min(odd[l + r - i], r - i + 1);
+            }
+            while (i - k >= 0 && i + k < n && s[i - k] == s[i + k]) {
+                k++;
+                seen.add(substringHash(prefix, pow, i - k + 1, i + k));
+            }
+            odd[i] = k;
+            if (i + k - 1 > r) {
+                l = i - k + 1;
+                r = i + k - 1;
+            }
+        }
+
+        int[] even = new int[n];
+        for (int i = 0, l = 0, r = -1; i < n; i++) {
+            int k = i > r ? 0 : Math.min(even[l + r - i + 1], r - i + 1);
+            while (i - k - 1 >= 0 && i + k < n && s[i - k - 1] == s[i + k]) {
+                k++;
+                seen.add(substringHash(prefix, pow, i - k, i + k));
+            }
+            even[i] = k;
+            if (i + k - 1 > r) {
+                l = i - k;
+                r = i + k - 1;
+            }
+        }
+
+        for (int i = 0; i < n; i++) {
+            stats.total += odd[i] + even[i];
+            if (2 * odd[i] - 1 > stats.longestLength) {
+                stats.longestLength = 2 * odd[i] - 1;
+                stats.longestStart = i - odd[i] + 1;
+            }
+            if (2 * even[i] > stats.longestLength) {
+                stats.longestLength = 2 * even[i];
+                stats.longestStart = i - even[i];
             }
         }
+        stats.distinct = seen.size();
+        return stats;
+    }
 
-        // Final count of palindromic substrings
-        return ans;
+    // hash of s[l, r)
+    private static long substringHash(long[] prefix, long[] pow, int l, int r) {
+        return reduce(prefix[r] + MOD - mulMod(prefix[l], pow[r - l]));
     }
 
-    // Helper function for modular exponentiation
-    private static long modPow(long base, long exp, long mod) {
-        long result = 1;
-        base = base % mod;
-        while (exp > 0) {
-            if ((exp & 1) == 1) {
-                result = (result * base) % mod;
+    // open-addressed set of hashes (all below 2^61 - 1; stored plus one so 0 can mark empty slots)
+    static final class LongSet {
+        private final long[] slots;
+        private final int mask;
+        private int size = 0;
+
+        LongSet(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(2, expected) * 2 - 1) << 1;
+            slots = new long[capacity];
+            mask = capacity - 1;
+        }
+
+        void add(long hash) {
+            long key = hash + 1;
+            int i = (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+            while (slots[i] != 0) {
+                if (slots[i] == key) {
+                    return;
+                }
+                i = (i + 1) & mask;
             }
-            base = (base * base) % mod;
-            exp >>= 1;
+            slots[i] = key;
+            size++;
+        }
+
+        int size() {
+            return size;
         }
-        return result;
     }
 
     public static void main(String[] args) throws IOException {
@@ -81,10 +166,10 @@ public class pcSol_java {
         String inputString = lines.get(0).trim();
 
         // Run Rabin-Karp
-        int actualOutput = countPalindromicSubstrings(inputString);
+        long actualOutput = countPalindromicSubstrings(inputString);
 
         // Read expected output
-        int expectedOutput = -1;
+        long expectedOutput = -1;
         try {
             String outputContent = new String(Files.readAllBytes(Paths.get(expectedOutputFile))).trim();
             expectedOutput = parseOutput(outputContent);
@@ -103,11 +188,11 @@ public class pcSol_java {
         }
     }
 
-    private static int parseOutput(String outputContent) {
+    private static long parseOutput(String outputContent) {
         String[] parts = outputContent.split("\\s+");
         if (parts.length == 0) {
             throw new IllegalArgumentException("Invalid output format.");
         }
-        return Integer.parseInt(parts[0]);
+        return Long.parseLong(parts[0]);
     }
 }
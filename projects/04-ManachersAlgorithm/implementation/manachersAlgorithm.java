@@ -1,3 +1,5 @@
+import java.util.Arrays;
+
 public class manachersAlgorithm {
     /**
      * Manacher's algorithm exploits the idea that there are mirrored palindromes within a larger palindrome.
@@ -76,6 +78,386 @@ public class manachersAlgorithm {
         return s.substring(start, start + maxLen);
     }
 
+    /**
+     * Reusable palindrome index over a char[] or byte[], built with the same mirrored-radius scan
+     * as manacher but without the '#' interleaving: odd and even palindromes get separate radius
+     * arrays instead.
+     *
+     * odd[i] is the number of odd-length palindromes centred on i (the longest is
+     * s[i - odd[i] + 1 .. i + odd[i] - 1]) and even[i] the number of even-length palindromes whose
+     * right half starts at i (the longest is s[i - even[i] .. i + even[i] - 1]). Every palindrome
+     * is a shorter-or-equal radius around one of these centres, so after the linear build
+     * isPalindrome, longestAt and countAll are all O(1).
+     *
+     * build replaces the contents and reuses the arrays when they are big enough, so one index can
+     * analyse many strings without allocating.
+     */
+    public static final class PalindromeIndex {
+        private int[] odd = new int[0];
+        private int[] even = new int[0];
+        private int n;
+        private long count;
+        private int longestStart, longestLength;
+
+        public PalindromeIndex build(char[] s) {
+            return build(s, s.length);
+        }
+
+        /** Index s[0, len). */
+        public PalindromeIndex build(char[] s, int len) {
+            prepare(len);
+            for (int i = 0, l = 0, r = -1; i < n; i++) {
+                int k = i > r ? 1 : Math.min(odd[l + r - i], r - i + 1);
+                while (i - k >= 0 && i + k < n && s[i - k] == s[i + k]) {
+                    k++;
+                }
+                odd[i] = k;
+                if (i + k - 1 > r) {
+                    l = i - k + 1;
+                    r = i + k - 1;
+                }
+            }
+            for (int i = 0, l = 0, r = -1; i < n; i++) {
+                int k = i > r ? 0 : Math.min(even[l + r - i + 1], r - i + 1);
+                while (i - k - 1 >= 0 && i + k < n && s[i - k - 1] == s[i + k]) {
+                    k++;
+                }
+                even[i] = k;
+                if (i + k - 1 > r) {
+                    l = i - k;
+                    r = i + k - 1;
+                }
+            }
+            summarize();
+            return this;
+        }
+
+        public PalindromeIndex build(byte[] s) {
+            return build(s, s.length);
+        }
+
+        /** Index s[0, len); the same scan as for char[]. */
+        public PalindromeIndex build(byte[] s, int len) {
+            prepare(len);
+            for (int i = 0, l = 0, r = -1; i < n; i++) {
+                int k = i > r ? 1 : Math.min(odd[l + r - i], r - i + 1);
+                while (i - k >= 0 && i + k < n && s[i - k] == s[i + k]) {
+                    k++;
+                }
+                odd[i] = k;
+                if (i + k - 1 > r) {
+                    l = i - k + 1;
+                    r = i + k - 1;
+                }
+            }
+            for (int i = 0, l = 0, r = -1; i < n; i++) {
+                int k = i > r ? 0 : Math.min(even[l + r - i + 1], r - i + 1);
+                while (i - k - 1 >= 0 && i + k < n && s[i - k - 1] == s[i + k]) {
+                    k++;
+                }
+                even[i] = k;
+                if (i + k - 1 > r) {
+                    l = i - k;
+                    r = i + k - 1;
+                }
+            }
+            summarize();
+            return this;
+        }
+
+        private void prepare(int len) {
+            if (odd.length < len) {
+                odd = new int[len];
+                even = new int[len];
+            }
+            n = len;
+        }
+
+        // total count and the first longest palindrome
+        private void summarize() {
+            count = 0;
+            longestStart = 0;
+            longestLength = 0;
+            for (int i = 0; i < n; i++) {
+                count += odd[i] + even[i];
+                if (2 * odd[i] - 1 > longestLength) {
+                    longestLength = 2 * odd[i] - 1;
+                    longestStart = i - odd[i] + 1;
+                }
+                if (2 * even[i] > longestLength) {
+                    longestLength = 2 * even[i];
+                    longestStart = i - even[i];
+                }
+            }
+        }
+
+        public int length() {
+            return n;
+        }
+
+        /** Whether s[l..r] (inclusive) is a palindrome. */
+        public boolean isPalindrome(int l, int r) {
+            if (l < 0 || r >= n || l > r) {
+                throw new IndexOutOfBoundsException("[" + l + ", " + r + "] in length " + n);
+            }
+            int len = r - l + 1;
+            if ((len & 1) == 1) {
+                return odd[(l + r) >>> 1] >= (len + 1) >>> 1;
+            }
+            return even[(l + r + 1) >>> 1] >= len >>> 1;
+        }
+
+        /**
+         * Length of the longest palindrome around one of the 2n - 1 centres: an even center c is
+         * the character c / 2, an odd one the gap between characters c / 2 and c / 2 + 1.
+         */
+        public int longestAt(int center) {
+            if (center < 0 || center > 2 * n - 2) {
+                throw new IndexOutOfBoundsException("center " + center + " in length " + n);
+            }
+            int i = center >>> 1;
+            return (center & 1) == 0 ? 2 * odd[i] - 1 : 2 * even[i + 1];
+        }
+
+        /** Number of palindromic substrings, counted by position. */
+        public long countAll() {
+            return count;
+        }
+
+        /** Start of the first longest palindromic substring. */
+        public int longestStart() {
+            return longestStart;
+        }
+
+        public int longestLength() {
+            return longestLength;
+        }
+    }
+
+    /**
+     * Palindromic tree (eertree) over an append-only stream of characters.
+     *
+     * Each node is one distinct palindrome that has occurred so far, with its length, a suffix link
+     * to its longest proper palindromic suffix, and transitions: the child of x by c is cxc. Two
+     * roots start the tree, node 0 of length -1 (so that its child by c is the single c) and node 1
+     * of length 0. Appending a character adds at most one node (a stream of n characters has at
+     * most n distinct non-empty palindromes) and walks suffix links from the previous longest
+     * palindromic suffix, which is O(1) amortized.
+     *
+     * Everything is kept in primitive arrays indexed by node. For an alphabet of a few characters
+     * the transitions are one flat table of sigma slots per node; otherwise they go in an
+     * open-addressed hash table keyed by (node, char).
+     */
+    public static final class Eertree {
+        private static final int NONE = 0;      // node 0 is never anyone's child
+
+        private char[] text = new char[16];
+        private int size = 0;
+
+        private int[] len = new int[16];
+        private int[] link = new int[16];
+        private int[] ends = new int[16];       // positions where this node was the longest suffix
+        private int[] firstEnd = new int[16];   // end (exclusive) of the first occurrence
+        private int nodes = 2;
+        private int last = 1;                   // node of the longest palindromic suffix
+
+        // flat transitions for chars first .. first + sigma - 1, or null
+        private final char first;
+        private final int sigma;
+        private int[] flat;
+        // hashed transitions otherwise: keys are (node << 16 | c) + 1, 0 marks an empty slot
+        private long[] keys;
+        private int[] children;
+        private int used = 0;
+
+        /** An eertree for any chars. */
+        public Eertree() {
+            first = 0;
+            sigma = 0;
+            keys = new long[64];
+            children = new int[64];
+            initRoots();
+        }
+
+        /** An eertree for the chars first .. first + sigma - 1 only, with flat transition tables. */
+        public Eertree(char first, int sigma) {
+            if (sigma < 1 || first + sigma > Character.MAX_VALUE + 1) {
+                throw new IllegalArgumentException("bad alphabet " + (int) first + " + " + sigma);
+            }
+            this.first = first;
+            this.sigma = sigma;
+            flat = new int[16 * sigma];
+            initRoots();
+        }
+
+        private void initRoots() {
+            len[0] = -1;
+            link[0] = 0;
+            len[1] = 0;
+            link[1] = 0;
+        }
+
+        /**
+         * Append c to the stream; returns true if it ends a palindrome not seen before.
+         */
+        public boolean append(char c) {
+            if (flat != null && (c < first || c >= first + sigma)) {
+                throw new IllegalArgumentException("char " + (int) c + " outside the alphabet");
+            }
+            if (size == text.length) {
+                text = Arrays.copyOf(text, 2 * size);
+            }
+            int pos = size;
+            text[size++] = c;
+
+            // longest palindromic suffix x of the old text with c before it, so cxc ends at pos
+            int cur = suffixExtensible(last, pos, c);
+            int node = child(cur, c);
+            if (node != NONE) {
+                last = node;
+                ends[node]++;
+                return false;
+            }
+
+            if (nodes == len.length) {
+                grow();
+            }
+            node = nodes++;
+            len[node] = len[cur] + 2;
+            // its suffix link is the longest proper palindromic suffix, found the same way from
+            // the next shorter suffix of x; a single character links to the empty palindrome
+            link[node] = len[node] == 1 ? 1 : child(suffixExtensible(link[cur], pos, c), c);
+            setChild(cur, c, node);
+            last = node;
+            ends[node] = 1;
+            firstEnd[node] = size;
+            return true;
+        }
+
+        // walk suffix links from node until text[pos - len - 1] == c; the -1 root always qualifies
+        private int suffixExtensible(int node, int pos, char c) {
+            while (true) {
+                int start = pos - len[node] - 1;
+                if (start >= 0 && text[start] == c) {
+                    return node;
+                }
+                if (node == 0) {
+                    return 0;
+                }
+                node = link[node];
+            }
+        }
+
+        private void grow() {
+            int cap = 2 * len.length;
+            len = Arrays.copyOf(len, cap);
+            link = Arrays.copyOf(link, cap);
+            ends = Arrays.copyOf(ends, cap);
+            firstEnd = Arrays.copyOf(firstEnd, cap);
+            if (flat != null) {
+                flat = Arrays.copyOf(flat, cap * sigma);
+            }
+        }
+
+        private int child(int node, char c) {
+            if (flat != null) {
+                return flat[node * sigma + (c - first)];
+            }
+            long key = ((long) node << 16 | c) + 1;
+            for (int i = slot(key); keys[i] != 0; i = (i + 1) & (keys.length - 1)) {
+                if (keys[i] == key) {
+                    return children[i];
+                }
+            }
+            return NONE;
+        }
+
+        private void setChild(int node, char c, int child) {
+            if (flat != null) {
+                flat[node * sigma + (c - first)] = child;
+                return;
+            }
+            if (2 * (used + 1) > keys.length) {
+                rehash();
+            }
+            long key = ((long) node << 16 | c) + 1;
+            int i = slot(key);
+            while (keys[i] != 0) {
+                i = (i + 1) & (keys.length - 1);
+            }
+            keys[i] = key;
+            children[i] = child;
+            used++;
+        }
+
+        private int slot(long key) {
+            return (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & (keys.length - 1);
+        }
+
+        private void rehash() {
+            long[] oldKeys = keys;
+            int[] oldChildren = children;
+            keys = new long[2 * oldKeys.length];
+            children = new int[2 * oldKeys.length];
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldKeys[j] != 0) {
+                    int i = slot(oldKeys[j]);
+                    while (keys[i] != 0) {
+                        i = (i + 1) & (keys.length - 1);
+                    }
+                    keys[i] = oldKeys[j];
+                    children[i] = oldChildren[j];
+                }
+            }
+        }
+
+        /** Characters appended so far. */
+        public int length() {
+            return size;
+        }
+
+        /** Number of distinct non-empty palindromic substrings of the stream so far. */
+        public int distinctCount() {
+            return nodes - 2;
+        }
+
+        /** Length of the longest palindromic suffix of the stream (0 before the first append). */
+        public int longestSuffixLength() {
+            return len[last];
+        }
+
+        /** Node of the longest palindromic suffix; nodes 2 .. distinctCount() + 1 are the palindromes. */
+        public int lastNode() {
+            return last;
+        }
+
+        public int nodeLength(int node) {
+            return len[node];
+        }
+
+        /** The palindrome of a node, copied out of its first occurrence. */
+        public String palindrome(int node) {
+            return new String(text, firstEnd[node] - len[node], len[node]);
+        }
+
+        /**
+         * Occurrence count of every palindrome, indexed by node.
+         *
+         * Each position only records its longest palindromic suffix; every shorter palindromic
+         * suffix there is on that node's suffix-link chain. A link always points to an older node,
+         * so pushing counts down the links in reverse creation order totals them in O(nodes).
+         */
+        public int[] occurrenceCounts() {
+            int[] occ = Arrays.copyOf(ends, nodes);
+            for (int v = nodes - 1; v >= 2; v--) {
+                occ[link[v]] += occ[v];
+            }
+            occ[0] = 0;
+            occ[1] = 0;
+            return occ;
+        }
+    }
+
     public static void main(String[] args) {
         java.util.Scanner scanner = new java.util.Scanner(System.in);
         System.out.println("Enter the string:");